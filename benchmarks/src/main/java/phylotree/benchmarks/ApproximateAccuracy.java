@@ -0,0 +1,77 @@
+package phylotree.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import phylotree.BuildOptions;
+import phylotree.ClusteringStrategy;
+import phylotree.PhyloTree;
+import phylotree.Species;
+
+/*
+ * Accuracy report for approximate tree construction: builds every input
+ * with UPGMA, exactly and with BuildOptions.setApproximateRefinement,
+ * and prints the Robinson-Foulds distance between the two trees,
+ * normalised by its maximum 2 (n - 2), next to both build times. Inputs
+ * are named as in BenchmarkInputs, and a .list file stands for every
+ * file it lists.
+ * Example:
+ *
+ *   java -cp benchmarks/target/benchmarks.jar phylotree.benchmarks.ApproximateAccuracy \
+ *        -approximate 64 animals.list plants.list synthetic:20000x1000
+ */
+
+public class ApproximateAccuracy {
+    private static final int DEFAULT_REFINEMENT = 64;
+
+    private ApproximateAccuracy() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int refinement = DEFAULT_REFINEMENT;
+        List<String> inputs = new ArrayList<String>();
+        for (int arg = 0; arg < args.length; arg++) {
+            if (args[arg].equals("-approximate")) {
+                refinement = Integer.parseInt(args[++arg]);
+            }
+            else if (args[arg].endsWith(".list")) {
+                for (String line : java.nio.file.Files.readAllLines(BenchmarkInputs.dataFile(args[arg]))) {
+                    if (!line.trim().isEmpty()) {
+                        inputs.add(line.trim());
+                    }
+                }
+            }
+            else {
+                inputs.add(args[arg]);
+            }
+        }
+
+        BuildOptions exact = new BuildOptions().setStrategy(ClusteringStrategy.UPGMA);
+        BuildOptions approximate = new BuildOptions().setStrategy(ClusteringStrategy.UPGMA)
+                                                     .setApproximateRefinement(refinement);
+        System.out.printf("%-28s %8s %6s %8s %10s %10s%n", "input", "species", "rf", "rf/max", "exact ms",
+                          "approx ms");
+        double total = 0;
+        int trees = 0;
+        for (String input : inputs) {
+            Species[] species = BenchmarkInputs.species(input);
+            long start = System.nanoTime();
+            PhyloTree reference = new PhyloTree(species, 100, exact);
+            long exactNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            PhyloTree estimate = new PhyloTree(species, 100, approximate);
+            long approximateNanos = System.nanoTime() - start;
+
+            int rf = reference.robinsonFoulds(estimate);
+            double normalised = species.length > 2 ? rf / (2.0 * (species.length - 2)) : 0.0;
+            total += normalised;
+            trees++;
+            System.out.printf("%-28s %8d %6d %8.4f %10.1f %10.1f%n", input, species.length, rf, normalised,
+                              exactNanos / 1e6, approximateNanos / 1e6);
+        }
+        if (trees > 0) {
+            System.out.printf("mean rf/max over %d trees: %.4f%n", trees, total / trees);
+        }
+    }
+}
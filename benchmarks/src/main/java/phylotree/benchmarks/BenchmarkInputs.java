@@ -0,0 +1,64 @@
+package phylotree.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import phylotree.PhyloTree;
+import phylotree.Species;
+
+/*
+ * Resolves the input names used by the benchmark parameters:
+ *
+ *   MTH/..., CHL/..., *.list   files of the bundled data, looked up in
+ *                              -Dphylotree.data (default: the working
+ *                              directory or its parent, whichever has MTH)
+ *   synthetic:NxL              SyntheticAlignment of N sequences of L
+ *                              residues, seed 42
+ */
+
+public class BenchmarkInputs {
+    private static final long SEED = 42;
+
+    private BenchmarkInputs() {
+    }
+
+    public static Species[] species(String input) throws IOException {
+        if (input.startsWith("synthetic:")) {
+            String[] size = input.substring("synthetic:".length()).split("x");
+            return SyntheticAlignment.generate(Integer.parseInt(size[0]), Integer.parseInt(size[1]), SEED);
+        }
+        return PhyloTree.loadSpeciesFile(dataFile(input).toString());
+    }
+
+    //  A FASTA file holding input; synthetic inputs are written to a
+    //  temporary file that is deleted on exit
+    public static Path fastaFile(String input) throws IOException {
+        if (input.startsWith("synthetic:")) {
+            Path file = Files.createTempFile("synthetic", ".fasta");
+            file.toFile().deleteOnExit();
+            SyntheticAlignment.writeFasta(species(input), file);
+            return file;
+        }
+        return dataFile(input);
+    }
+
+    public static Path dataFile(String name) {
+        return dataDirectory().resolve(name);
+    }
+
+    public static Path dataDirectory() {
+        String configured = System.getProperty("phylotree.data");
+        if (configured != null) {
+            return Paths.get(configured).toAbsolutePath();
+        }
+        Path here = Paths.get("").toAbsolutePath();
+        for (Path dir = here; dir != null; dir = dir.getParent()) {
+            if (Files.isDirectory(dir.resolve("MTH"))) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("Cannot find the MTH/CHL data from " + here + "; set -Dphylotree.data");
+    }
+}
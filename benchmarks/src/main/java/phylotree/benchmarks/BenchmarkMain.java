@@ -0,0 +1,25 @@
+package phylotree.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/*
+ * Entry point of benchmarks.jar: the JMH command line, except that
+ * results are written as JSON to jmh-result.json unless -rf or -rff is
+ * given. Example:
+ *
+ *   java -jar benchmarks/target/benchmarks.jar BuildTree -p input=synthetic:10000x1000
+ */
+
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<String>(Arrays.asList(args));
+        if (!options.contains("-rf") && !options.contains("-rff")) {
+            options.addAll(0, Arrays.asList("-rf", "json", "-rff", "jmh-result.json"));
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
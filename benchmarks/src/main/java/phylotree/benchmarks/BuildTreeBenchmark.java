@@ -0,0 +1,56 @@
+package phylotree.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import phylotree.BuildOptions;
+import phylotree.ClusteringStrategy;
+import phylotree.PhyloTree;
+import phylotree.Species;
+
+/*
+ * Tree construction through the PhyloTree constructor: all-pairs
+ * distances followed by clustering. Large synthetic inputs take seconds
+ * per tree, so each measurement is a single build.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuildTreeBenchmark {
+    @Param({"MTH/MTH00098.ref.fasta", "CHL/CHL00008.ref.fasta", "synthetic:2000x1000", "synthetic:10000x1000"})
+    public String input;
+
+    @Param({"UPGMA", "NEIGHBOR_JOINING"})
+    public String strategy;
+
+    private Species[] species;
+    private BuildOptions options;
+
+    @Setup
+    public void setUp() throws IOException {
+        species = BenchmarkInputs.species(input);
+        options = new BuildOptions().setStrategy(strategy.equals("UPGMA")
+                ? ClusteringStrategy.UPGMA : ClusteringStrategy.NEIGHBOR_JOINING);
+    }
+
+    @Benchmark
+    public PhyloTree buildTree() {
+        return new PhyloTree(species, 100, options);
+    }
+}
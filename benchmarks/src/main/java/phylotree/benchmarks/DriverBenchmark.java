@@ -0,0 +1,81 @@
+package phylotree.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import phylotree.Driver;
+
+/*
+ * The whole Driver run over one of the bundled alignment lists: loading,
+ * building, statistics and writing every .tree and .distances file.
+ * Console output is discarded while measuring.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DriverBenchmark {
+    @Param({"animals.list", "plants.list"})
+    public String list;
+
+    private Path listFile;
+    private Path outputDir;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() throws IOException {
+        // The lists name their files relative to the data directory
+        List<String> files = new ArrayList<String>();
+        for (String line : Files.readAllLines(BenchmarkInputs.dataFile(list))) {
+            if (!line.isBlank()) {
+                files.add(BenchmarkInputs.dataFile(line.trim()).toString());
+            }
+        }
+        listFile = Files.createTempFile("driver", ".list");
+        Files.write(listFile, files);
+        outputDir = Files.createTempDirectory("driver");
+
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(console);
+        try (DirectoryStream<Path> written = Files.newDirectoryStream(outputDir)) {
+            for (Path path : written) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(outputDir);
+        Files.delete(listFile);
+    }
+
+    @Benchmark
+    public void driver() {
+        Driver.main(new String[] {listFile.toString(), outputDir.toString()});
+    }
+}
@@ -0,0 +1,46 @@
+package phylotree.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import phylotree.PhyloTree;
+import phylotree.Species;
+
+/*
+ * Parsing a FASTA alignment with PhyloTree.loadSpeciesFile.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadSpeciesBenchmark {
+    @Param({"MTH/MTH00098.ref.fasta", "CHL/CHL00008.ref.fasta", "synthetic:10000x1000"})
+    public String input;
+
+    private String file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = BenchmarkInputs.fastaFile(input).toString();
+    }
+
+    @Benchmark
+    public Species[] loadSpeciesFile() throws IOException {
+        return PhyloTree.loadSpeciesFile(file);
+    }
+}
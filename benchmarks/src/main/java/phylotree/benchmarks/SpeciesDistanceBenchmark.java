@@ -0,0 +1,88 @@
+package phylotree.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import phylotree.SequenceEncoding;
+import phylotree.Species;
+
+/*
+ * Compares the packed bit-parallel Species.distance against the original
+ * String[]-per-residue comparison for a range of sequence lengths and
+ * each packed encoding.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpeciesDistanceBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int length;
+
+    @Param({"NUCLEOTIDE_2BIT", "NUCLEOTIDE_4BIT", "BYTE"})
+    public SequenceEncoding encoding;
+
+    private Species packed1, packed2;
+    private String[] legacy1, legacy2;
+
+    @Setup
+    public void setUp() {
+        String alphabet;
+        switch (encoding) {
+            case NUCLEOTIDE_2BIT:
+                alphabet = "ACGT";
+                break;
+            case NUCLEOTIDE_4BIT:
+                alphabet = "-ACGTN";
+                break;
+            default:
+                alphabet = "-ACDEFGHIKLMNPQRSTVWY";
+        }
+
+        // Two related sequences differing at roughly 10% of the sites
+        Random random = new Random(42);
+        StringBuilder s1 = new StringBuilder(length);
+        StringBuilder s2 = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            s1.append(c);
+            s2.append(random.nextInt(10) == 0 ? alphabet.charAt(random.nextInt(alphabet.length())) : c);
+        }
+
+        packed1 = new Species("a", s1, encoding);
+        packed2 = new Species("b", s2, encoding);
+        legacy1 = packed1.getSequence();
+        legacy2 = packed2.getSequence();
+    }
+
+    @Benchmark
+    public double packed() {
+        return Species.distance(packed1, packed2);
+    }
+
+    @Benchmark
+    public double legacyStringArray() {
+        int numDiffs = 0;
+        for (int i = 0; i < legacy1.length; i++) {
+            if (!legacy1[i].equals(legacy2[i])) {
+                numDiffs++;
+            }
+        }
+        return ((double) numDiffs) / legacy1.length;
+    }
+}
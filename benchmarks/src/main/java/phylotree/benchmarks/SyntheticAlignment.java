@@ -0,0 +1,70 @@
+package phylotree.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import phylotree.SequenceEncoding;
+import phylotree.Species;
+
+/*
+ * Seeded generator of aligned nucleotide sequences with a tree-like
+ * history: species 0 is random, and every later species copies a
+ * randomly chosen earlier one with a small fraction of its sites mutated.
+ * The same size, length and seed always give the same alignment, and the
+ * cost is linear in the number of residues, so it scales to tens of
+ * thousands of sequences.
+ */
+
+public class SyntheticAlignment {
+    private static final String NUCLEOTIDES = "ACGT";
+    private static final double MUTATION_RATE = 0.02;
+
+    private SyntheticAlignment() {
+    }
+
+    public static Species[] generate(int size, int length, long seed) {
+        Random random = new Random(seed);
+        char[][] sequences = new char[size][];
+        Species[] species = new Species[size];
+        for (int i = 0; i < size; i++) {
+            char[] sequence;
+            if (i == 0) {
+                sequence = new char[length];
+                for (int k = 0; k < length; k++) {
+                    sequence[k] = NUCLEOTIDES.charAt(random.nextInt(4));
+                }
+            }
+            else {
+                sequence = sequences[random.nextInt(i)].clone();
+                for (int k = 0; k < length; k++) {
+                    if (random.nextDouble() < MUTATION_RATE) {
+                        sequence[k] = NUCLEOTIDES.charAt(random.nextInt(4));
+                    }
+                }
+            }
+            sequences[i] = sequence;
+            species[i] = new Species("S" + i, CharBuffer.wrap(sequence), SequenceEncoding.NUCLEOTIDE_2BIT);
+        }
+        return species;
+    }
+
+    //  Writes species as a FASTA file, one line per sequence
+    public static void writeFasta(Species[] species, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (Species s : species) {
+                out.write('>');
+                out.write(s.getName());
+                out.newLine();
+                for (int k = 0; k < s.getLength(); k++) {
+                    out.write(s.residueAt(k));
+                }
+                out.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package phylotree.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import phylotree.BuildOptions;
+import phylotree.PhyloTree;
+import phylotree.PhyloTreeNode;
+import phylotree.Species;
+
+/*
+ * Queries of a built tree: findEvolutionaryDistance over every pair of
+ * species (as the .distances output does), clade membership of every
+ * species in every clade on its path to the root, and the Newick string.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeQueryBenchmark {
+    @Param({"MTH/MTH00098.ref.fasta", "CHL/CHL00008.ref.fasta", "synthetic:2000x1000"})
+    public String input;
+
+    private PhyloTree tree;
+    private String[] names;
+    private String[] memberLabels, cladeLabels;
+
+    @Setup
+    public void setUp() throws IOException {
+        tree = new PhyloTree(BenchmarkInputs.species(input), 100, new BuildOptions());
+        List<Species> species = tree.getAllSpecies();
+        names = new String[species.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = species.get(i).getName();
+        }
+
+        List<String> members = new ArrayList<String>();
+        List<String> clades = new ArrayList<String>();
+        for (String name : names) {
+            for (PhyloTreeNode node = tree.findTreeNodeByLabel(name); node != null; node = node.getParent()) {
+                members.add(name);
+                clades.add(node.getLabel());
+            }
+        }
+        memberLabels = members.toArray(new String[0]);
+        cladeLabels = clades.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public double allPairsEvolutionaryDistance() {
+        double sum = 0.0;
+        for (int i = 0; i < names.length; i++) {
+            for (int j = 0; j < names.length; j++) {
+                sum += tree.findEvolutionaryDistance(names[i], names[j]);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public boolean[] cladeMembership() {
+        return tree.isInClade(memberLabels, cladeLabels);
+    }
+
+    @Benchmark
+    public String toTreeString() {
+        return tree.toTreeString();
+    }
+}
@@ -0,0 +1,347 @@
+package phylotree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Builds the trees of several FASTA alignments at once and writes their
+ * .tree and .distances files into an output directory.
+ *
+ * Alignments run on a fixed pool of threads. Before an alignment is
+ * loaded it must reserve its estimated memory footprint from a shared
+ * budget (see estimateBytes), so a few very large files cannot exhaust
+ * the heap by running together; an alignment larger than the whole
+ * budget runs on its own. Waiting for the budget blocks a pool thread,
+ * which a work-stealing pool would not compensate for. Here every
+ * reservation is held by an alignment running on a thread of its own,
+ * so the waits always end. Console output of each alignment is buffered
+ * and printed in list order as soon as it and every earlier alignment
+ * have finished, followed by a timing summary on standard error.
+ */
+
+public class BatchRunner {
+    private final String outputDir;
+    private final int printingDepth;
+    private final int threads;
+    private final BuildOptions options;
+    private final MemoryBudget budget;
+    private final DistanceMatrixWriter.Format distanceFormat;
+    private Path reportFile;
+    private int replicates;
+    private long seed;
+
+    //  - threads >= 1 alignments are processed at a time
+    //  - memoryBudget is the number of bytes all running alignments may
+    //    use together
+    //  - distanceFormat selects how the all-pairs distances are written
+    public BatchRunner(String outputDir, int printingDepth, int threads, long memoryBudget,
+                       DistanceMatrixWriter.Format distanceFormat) {
+        this(outputDir, printingDepth, threads, memoryBudget, distanceFormat, null);
+    }
+
+    //  - distanceCache, if not null, is shared by all alignments and its
+    //    hit and miss counts are reported after the last one
+    public BatchRunner(String outputDir, int printingDepth, int threads, long memoryBudget,
+                       DistanceMatrixWriter.Format distanceFormat, DistanceMatrixCache distanceCache) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread: " + threads);
+        }
+        this.outputDir = outputDir;
+        this.printingDepth = printingDepth;
+        this.threads = threads;
+        this.budget = new MemoryBudget(memoryBudget);
+        this.distanceFormat = distanceFormat;
+
+        // Share the cores between the alignments running together
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.options = new BuildOptions().setParallelism(Math.max(1, processors / threads))
+                .setDistanceCache(distanceCache)
+                .setDistanceHeapBudget(memoryBudget / threads);
+    }
+
+    //  Writes the PhaseMetrics of every alignment processed to reportFile,
+    //  one JSON object per line in list order. No report by default.
+    public BatchRunner setReportFile(Path reportFile) {
+        this.reportFile = reportFile;
+        return this;
+    }
+
+    //  - replicates >= 0
+    //  - Bootstraps every tree with replicates replicates from seed (see
+    //    PhyloTree.bootstrap): the .tree files get support values and a
+    //    .consensus.tree file is written next to them. Off (0) by default.
+    public BatchRunner setBootstrap(int replicates, long seed) {
+        if (replicates < 0) {
+            throw new IllegalArgumentException("Replicates must not be negative: " + replicates);
+        }
+        this.replicates = replicates;
+        this.seed = seed;
+        return this;
+    }
+
+    //  Computes the distances of every alignment under model (see
+    //  DistanceModel); p-distance by default
+    public BatchRunner setDistanceModel(DistanceModel model) {
+        options.setDistanceModel(model);
+        return this;
+    }
+
+    //  Builds the trees approximately (see
+    //  BuildOptions.setApproximateRefinement); 0, exact, by default
+    public BatchRunner setApproximateRefinement(int refinementSize) {
+        options.setApproximateRefinement(refinementSize);
+        return this;
+    }
+
+    public void run(List<String> fastaFilenames) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Writer report = null;
+        try {
+            if (reportFile != null) {
+                try {
+                    report = Files.newBufferedWriter(reportFile);
+                }
+                catch (IOException e) {
+                    System.err.println("Error: Unable to open report file " + reportFile);
+                    return;
+                }
+            }
+
+            List<Future<Result>> results = new ArrayList<Future<Result>>();
+            for (String fastaFilename : fastaFilenames) {
+                results.add(pool.submit(() -> process(fastaFilename)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                Result result;
+                try {
+                    result = results.get(i).get();
+                }
+                catch (ExecutionException e) {
+                    result = new Result(fastaFilenames.get(i));
+                    result.error = "Error: Unable to process " + fastaFilenames.get(i) + ": " + e.getCause();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                System.out.println("\nLoading tree: " + (i + 1));
+                System.out.print(result.console);
+                System.out.flush();
+                if (result.error != null) {
+                    System.err.println(result.error);
+                }
+                else {
+                    System.err.println(result.summary());
+                    if (report != null && result.metrics != null) {
+                        try {
+                            report.write(result.metrics.toJson());
+                            report.write(System.lineSeparator());
+                            report.flush();
+                        }
+                        catch (IOException e) {
+                            System.err.println("Error: Unable to write report file " + reportFile);
+                            report = null;
+                        }
+                    }
+                }
+            }
+
+            DistanceMatrixCache cache = options.getDistanceCache();
+            if (cache != null) {
+                System.err.println("# distance cache " + cache.getDirectory() + ": " + cache.getHits() + " hits, "
+                                   + cache.getMisses() + " misses");
+            }
+        }
+        finally {
+            pool.shutdownNow();
+            if (report != null) {
+                try {
+                    report.close();
+                }
+                catch (IOException e) {
+                    System.err.println("Error: Unable to write report file " + reportFile);
+                }
+            }
+        }
+    }
+
+    private Result process(String fastaFilename) throws InterruptedException {
+        Result result = new Result(fastaFilename);
+        File fastaFile = new File(fastaFilename);
+        if (reportFile != null || PhaseMetrics.isRecording()) {
+            result.metrics = new PhaseMetrics(fastaFilename);
+        }
+
+        long reserved;
+        try {
+            reserved = budget.acquire(estimateBytes(fastaFile));
+        }
+        catch (IOException e) {
+            result.error = "Error: Unable to open file " + fastaFilename;
+            return result;
+        }
+
+        try {
+            long start = System.nanoTime();
+            Species[] species;
+            try {
+                species = PhyloTree.loadSpeciesFile(fastaFilename, result.metrics);
+            }
+            catch (NoSuchFileException e) {
+                result.error = "Error: Unable to open file " + fastaFilename;
+                return result;
+            }
+            catch (IOException e) {
+                result.error = "Error: Unable to parse file " + e.getMessage();
+                return result;
+            }
+            result.species = species.length;
+            result.loadNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            PhyloTree tree = new PhyloTree(species, printingDepth, result.metrics == null ? options
+                    : copy(options).setMetrics(result.metrics));
+            Bootstrap bootstrap = replicates > 0 ? tree.bootstrap(replicates, seed) : null;
+            result.buildNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            PhaseMetrics.Recorder phase = PhaseMetrics.start(result.metrics, PhaseMetrics.Phase.OUTPUT);
+            try {
+                result.console = write(tree, fastaFile);
+                if (bootstrap != null) {
+                    Files.writeString(Paths.get(outputDir, fastaFile.getName() + ".consensus.tree"),
+                                      bootstrap.toConsensusNewick(), Charset.defaultCharset());
+                }
+                phase.end(species.length, species.length, phase.isEnabled() ? writtenBytes(fastaFile) : 0);
+            }
+            catch (IOException e) {
+                result.error = "Error: Unable to open output file for writing" + e;
+            }
+            result.writeNanos = System.nanoTime() - start;
+            return result;
+        }
+        finally {
+            budget.release(reserved);
+        }
+    }
+
+    //  Writes the .tree and distances files of tree and returns the text
+    //  to show on the console
+    private String write(PhyloTree tree, File fastaFile) throws IOException {
+        File treeOutFile = new File(outputDir + "/" + fastaFile.getName() + ".tree");
+        File distOutFile = new File(outputDir + "/" + fastaFile.getName() + distanceExtension());
+        StringBuilder console = new StringBuilder();
+
+        try (Writer treeOut = Files.newBufferedWriter(treeOutFile.toPath(), Charset.defaultCharset())) {
+            console.append(tree);
+            tree.writeNewick(treeOut);
+        }
+        tree.writeDistances(distOutFile.toPath(), distanceFormat);
+
+        java.text.DecimalFormat formatter = new java.text.DecimalFormat("0.00");
+        String newline = System.lineSeparator();
+        console.append("# species is " + tree.countAllSpecies() + newline);
+        console.append("Tree height is " + tree.getHeight() + newline);
+        console.append("Weighted height is " + formatter.format(tree.getWeightedHeight()) + newline);
+        return console.toString();
+    }
+
+    private long writtenBytes(File fastaFile) throws IOException {
+        return Files.size(Paths.get(outputDir, fastaFile.getName() + ".tree"))
+               + Files.size(Paths.get(outputDir, fastaFile.getName() + distanceExtension()));
+    }
+
+    // The shared options with nothing per-alignment set yet
+    private static BuildOptions copy(BuildOptions options) {
+        return new BuildOptions().setParallelism(options.getParallelism())
+                .setStrategy(options.getStrategy())
+                .setDistanceModel(options.getDistanceModel())
+                .setCompressSites(options.isCompressSites())
+                .setCollapseDuplicates(options.isCollapseDuplicates())
+                .setApproximateRefinement(options.getApproximateRefinement())
+                .setMaxInsertionDrift(options.getMaxInsertionDrift())
+                .setDistanceCache(options.getDistanceCache())
+                .setDistanceHeapBudget(options.getDistanceHeapBudget())
+                .setFloat32Distances(options.isFloat32Distances())
+                .setSpillDirectory(options.getSpillDirectory());
+    }
+
+    private String distanceExtension() {
+        switch (distanceFormat) {
+            case BINARY:
+                return ".distances.bin";
+            case PHYLIP:
+                return ".phy";
+            default:
+                return ".distances";
+        }
+    }
+
+    //  Rough upper bound on the heap needed to process an alignment: the
+    //  packed sequences (at most the file size), the condensed distance
+    //  matrix, and the tree nodes with their labels
+    public static long estimateBytes(File fastaFile) throws IOException {
+        long n = FastaReader.countSequences(Paths.get(fastaFile.getPath()));
+        return 2 * fastaFile.length() + 8 * (n * (n - 1) / 2) + 1024 * n;
+    }
+
+    private static class Result {
+        final String file;
+        String console = "";
+        String error;
+        int species;
+        long loadNanos, buildNanos, writeNanos;
+        PhaseMetrics metrics;    // Null unless reporting or recording
+
+        Result(String file) {
+            this.file = file;
+        }
+
+        String summary() {
+            return String.format("# %s: %d species, load %d ms, build %d ms, write %d ms",
+                                 new File(file).getName(), species, loadNanos / 1000000,
+                                 buildNanos / 1000000, writeNanos / 1000000);
+        }
+    }
+
+    // Counting semaphore over bytes
+    private static class MemoryBudget {
+        private final long capacity;
+        private long available;
+
+        MemoryBudget(long capacity) {
+            this.capacity = capacity;
+            this.available = capacity;
+        }
+
+        //  Blocks until bytes can be reserved and returns the amount actually
+        //  reserved; requests above the capacity wait for the whole budget
+        synchronized long acquire(long bytes) throws InterruptedException {
+            long wanted = Math.min(bytes, capacity);
+            while (available < wanted) {
+                wait();
+            }
+            available -= wanted;
+            return wanted;
+        }
+
+        synchronized void release(long bytes) {
+            available += bytes;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package phylotree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Bootstrap support for trees built from an alignment. Each replicate
+ * resamples the alignment's columns with replacement (as ColumnWeights,
+ * without copying sequences), rebuilds the tree with the same clustering
+ * strategy, and counts the clades it contains. A clade is the set of
+ * species below an internal node, kept as a bitset over the species'
+ * positions in the list given to run().
+ *
+ * Replicate r draws its columns from a generator seeded with the seed and
+ * r alone, and clade counts are sums, so the result does not depend on
+ * how many threads ran the replicates or in which order.
+ */
+
+public class Bootstrap {
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final List<Species> species;
+    private final int replicates;
+    private final Map<Clade,Integer> counts;
+
+    private Bootstrap(List<Species> species, int replicates, Map<Clade,Integer> counts) {
+        this.species = species;
+        this.replicates = replicates;
+        this.counts = counts;
+    }
+
+    //  - species is a non-empty aligned set, replicates >= 1
+    //  - Builds replicates trees with strategy on a work-stealing pool of
+    //    parallelism threads
+    public static Bootstrap run(List<Species> species, ClusteringStrategy strategy, int replicates,
+                                long seed, int parallelism) {
+        return run(species, strategy, DistanceModel.P_DISTANCE, replicates, seed, parallelism);
+    }
+
+    //  As above, with the replicate distances computed under model
+    public static Bootstrap run(List<Species> species, ClusteringStrategy strategy, DistanceModel model,
+                                int replicates, long seed, int parallelism) {
+        if (replicates < 1) {
+            throw new IllegalArgumentException("Need at least one replicate: " + replicates);
+        }
+        Species[] aligned = species.toArray(new Species[0]);
+        Map<Clade,Integer> counts = new ConcurrentHashMap<Clade,Integer>();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Replicates(aligned, strategy, model, seed, counts, 0, replicates));
+        }
+        finally {
+            pool.shutdown();
+        }
+        return new Bootstrap(Collections.unmodifiableList(new ArrayList<Species>(species)), replicates,
+                             new HashMap<Clade,Integer>(counts));
+    }
+
+    public int getReplicates() {
+        return replicates;
+    }
+
+    //  Number of replicates containing a node with exactly the species at
+    //  positions [from, to) of the list given to run()
+    public int count(int from, int to) {
+        long[] bits = new long[(species.size() + 63) >>> 6];
+        for (int k = from; k < to; k++) {
+            bits[k >>> 6] |= 1L << k;
+        }
+        return counts.getOrDefault(new Clade(bits), 0);
+    }
+
+    //  Number of replicates containing a node with exactly these species
+    public int count(List<Species> clade) {
+        long[] bits = new long[(species.size() + 63) >>> 6];
+        Map<Species,Integer> positions = new java.util.IdentityHashMap<Species,Integer>();
+        for (int k = 0; k < species.size(); k++) {
+            positions.put(species.get(k), k);
+        }
+        for (Species s : clade) {
+            Integer k = positions.get(s);
+            if (k == null) {
+                return 0;
+            }
+            bits[k >>> 6] |= 1L << k;
+        }
+        return counts.getOrDefault(new Clade(bits), 0);
+    }
+
+    //  Every clade counted, as the positions of its species in the list
+    //  given to run(), with the number of replicates containing it. Used by
+    //  tests.
+    Map<BitSet,Integer> cladeCounts() {
+        Map<BitSet,Integer> result = new HashMap<BitSet,Integer>();
+        for (Map.Entry<Clade,Integer> entry : counts.entrySet()) {
+            result.put(BitSet.valueOf(entry.getKey().bits), entry.getValue());
+        }
+        return result;
+    }
+
+    //  Majority-rule consensus: every clade found in more than half of the
+    //  replicates, as a Newick tree without branch lengths whose internal
+    //  nodes are labelled with their support in percent
+    public String toConsensusNewick() {
+        List<Clade> majority = new ArrayList<Clade>();
+        for (Map.Entry<Clade,Integer> entry : counts.entrySet()) {
+            if (2L * entry.getValue() > replicates && entry.getKey().size() < species.size()) {
+                majority.add(entry.getKey());
+            }
+        }
+        // Larger clades first, so every clade's parent is placed before it
+        majority.sort((a, b) -> a.size() != b.size() ? Integer.compare(b.size(), a.size())
+                                : Integer.compare(a.first(), b.first()));
+
+        long[] all = new long[(species.size() + 63) >>> 6];
+        for (int k = 0; k < species.size(); k++) {
+            all[k >>> 6] |= 1L << k;
+        }
+        ConsensusNode root = new ConsensusNode(new Clade(all), -1);
+        for (Clade clade : majority) {
+            // Majority clades are pairwise compatible: nested or disjoint
+            root.smallestContaining(clade).children.add(new ConsensusNode(clade, -1));
+        }
+        for (int k = 0; k < species.size(); k++) {
+            long[] bits = new long[all.length];
+            bits[k >>> 6] |= 1L << k;
+            root.smallestContaining(new Clade(bits)).children.add(new ConsensusNode(null, k));
+        }
+
+        // Depth-first without recursion; a node is closed once all of its
+        // children have been written
+        StringBuilder newick = new StringBuilder();
+        ArrayDeque<ConsensusNode> pending = new ArrayDeque<ConsensusNode>();
+        ArrayDeque<Integer> next = new ArrayDeque<Integer>();
+        pending.push(root);
+        next.push(0);
+        while (!pending.isEmpty()) {
+            ConsensusNode node = pending.peek();
+            int k = next.pop();
+            if (node.clade == null) {
+                newick.append(species.get(node.leaf).getName());
+                pending.pop();
+                continue;
+            }
+            if (k == 0) {
+                node.children.sort((a, b) -> Integer.compare(a.first(), b.first()));
+                newick.append('(');
+            }
+            if (k < node.children.size()) {
+                if (k > 0) {
+                    newick.append(',');
+                }
+                next.push(k + 1);
+                pending.push(node.children.get(k));
+                next.push(0);
+            }
+            else {
+                newick.append(')');
+                if (node != root) {
+                    newick.append(Math.round(100.0 * counts.get(node.clade) / replicates));
+                }
+                pending.pop();
+            }
+        }
+        return newick.append(';').toString();
+    }
+
+    // Counts the clades of one replicate tree per leaf task
+    private static class Replicates extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Species[] species;
+        private final ClusteringStrategy strategy;
+        private final DistanceModel model;
+        private final long seed;
+        private final Map<Clade,Integer> counts;
+        private final int from, to;
+
+        Replicates(Species[] species, ClusteringStrategy strategy, DistanceModel model, long seed,
+                   Map<Clade,Integer> counts, int from, int to) {
+            this.species = species;
+            this.strategy = strategy;
+            this.model = model;
+            this.seed = seed;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Replicates(species, strategy, model, seed, counts, from, mid),
+                          new Replicates(species, strategy, model, seed, counts, mid, to));
+                return;
+            }
+
+            int n = species.length;
+            SplittableRandom random = new SplittableRandom(seed + from * SEED_STEP);
+            ColumnWeights weights = ColumnWeights.resample(species[0].getLength(), random);
+            DistanceMatrix distances = new DistanceMatrix(n, new DistanceMatrixBuilder(1).withModel(model)
+                                                                 .weighted(weights).build(species));
+            int[] sizes = new int[n];
+            Arrays.fill(sizes, 1);
+
+            long[][] clades = new long[n][];
+            strategy.cluster(distances, sizes, (i, j, distance) -> {
+                long[] merged = clades[i] != null ? clades[i] : single(i, n);
+                long[] other = clades[j] != null ? clades[j] : single(j, n);
+                for (int w = 0; w < merged.length; w++) {
+                    merged[w] |= other[w];
+                }
+                clades[i] = merged;
+                clades[j] = null;
+                Clade clade = new Clade(merged.clone());
+                if (clade.size() < n) {
+                    counts.merge(clade, 1, Integer::sum);
+                }
+            });
+        }
+
+        private static long[] single(int k, int n) {
+            long[] bits = new long[(n + 63) >>> 6];
+            bits[k >>> 6] |= 1L << k;
+            return bits;
+        }
+    }
+
+    // Immutable leaf bitset usable as a map key
+    private static final class Clade {
+        private final long[] bits;
+        private final int hash;
+
+        Clade(long[] bits) {
+            this.bits = bits;
+            this.hash = Arrays.hashCode(bits);
+        }
+
+        int size() {
+            int size = 0;
+            for (long word : bits) {
+                size += Long.bitCount(word);
+            }
+            return size;
+        }
+
+        int first() {
+            for (int w = 0; w < bits.length; w++) {
+                if (bits[w] != 0) {
+                    return (w << 6) + Long.numberOfTrailingZeros(bits[w]);
+                }
+            }
+            return -1;
+        }
+
+        boolean contains(Clade other) {
+            for (int w = 0; w < bits.length; w++) {
+                if ((other.bits[w] & ~bits[w]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Clade && Arrays.equals(bits, ((Clade) o).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private class ConsensusNode {
+        final Clade clade;      // Null for leaves
+        final int leaf;         // Position of the species, for leaves
+        final List<ConsensusNode> children = new ArrayList<ConsensusNode>();
+
+        ConsensusNode(Clade clade, int leaf) {
+            this.clade = clade;
+            this.leaf = leaf;
+        }
+
+        int first() {
+            return clade == null ? leaf : clade.first();
+        }
+
+        ConsensusNode smallestContaining(Clade target) {
+            ConsensusNode node = this;
+            boolean descended = true;
+            while (descended) {
+                descended = false;
+                for (ConsensusNode child : node.children) {
+                    if (child.clade != null && child.clade.contains(target)) {
+                        node = child;
+                        descended = true;
+                        break;
+                    }
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package phylotree;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Tuning knobs for building a PhyloTree. The defaults reproduce the
+ * behaviour of PhyloTree(speciesFile, printingDepth).
+ */
+
+public class BuildOptions {
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private ClusteringStrategy strategy = ClusteringStrategy.UPGMA;
+    private DistanceModel distanceModel = DistanceModel.P_DISTANCE;
+    private boolean compressSites = true;
+    private boolean collapseDuplicates = true;
+    private int approximateRefinement;
+    private double maxInsertionDrift = Double.POSITIVE_INFINITY;
+    private DistanceMatrixCache distanceCache;
+    private long distanceHeapBudget = Runtime.getRuntime().maxMemory() / 2;
+    private boolean float32Distances;
+    private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private PhaseMetrics metrics;
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    //  - parallelism >= 1: number of worker threads used for the all-pairs
+    //    distance stage
+    public BuildOptions setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public ClusteringStrategy getStrategy() {
+        return this.strategy;
+    }
+
+    //  Selects the tree-building method, UPGMA by default. The original
+    //  O(n^3) closest-pair scan is available as
+    //  new LinkageClusterer(LinkageClusterer.Linkage.UPGMA, LinkageClusterer.Search.FULL_SCAN)
+    public BuildOptions setStrategy(ClusteringStrategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    public DistanceModel getDistanceModel() {
+        return this.distanceModel;
+    }
+
+    //  Selects how pairwise distances are computed, p-distance by default
+    public BuildOptions setDistanceModel(DistanceModel distanceModel) {
+        this.distanceModel = distanceModel;
+        return this;
+    }
+
+    public boolean isCompressSites() {
+        return this.compressSites;
+    }
+
+    //  Computes the all-pairs distances over the distinct site patterns of
+    //  the alignment (see SitePatterns) instead of every column. On by
+    //  default; the distances are the same either way.
+    public BuildOptions setCompressSites(boolean compressSites) {
+        this.compressSites = compressSites;
+        return this;
+    }
+
+    public boolean isCollapseDuplicates() {
+        return this.collapseDuplicates;
+    }
+
+    //  Clusters each set of identical sequences once, as a subtree of
+    //  zero-length branches (see DuplicateSequences). Only applies to
+    //  exact builds with LinkageClusterer strategies, whose trees it does
+    //  not change; on by default.
+    public BuildOptions setCollapseDuplicates(boolean collapseDuplicates) {
+        this.collapseDuplicates = collapseDuplicates;
+        return this;
+    }
+
+    public int getApproximateRefinement() {
+        return this.approximateRefinement;
+    }
+
+    //  - approximateRefinement is 0, or at least 2
+    //  - With a refinement size, alignments of more distinct sequences than
+    //    that are clustered approximately from k-mer sketches, and only
+    //    subtrees of up to approximateRefinement sequences from exact
+    //    distances (see SketchClusterer). 0 (exact clustering) by default.
+    public BuildOptions setApproximateRefinement(int approximateRefinement) {
+        if (approximateRefinement < 0 || approximateRefinement == 1) {
+            throw new IllegalArgumentException("Refinement size must be 0 or at least 2: "
+                                               + approximateRefinement);
+        }
+        this.approximateRefinement = approximateRefinement;
+        return this;
+    }
+
+    public double getMaxInsertionDrift() {
+        return this.maxInsertionDrift;
+    }
+
+    //  - maxInsertionDrift >= 0: largest fraction of a tree's species that
+    //    PhyloTree.addSpecies may place incrementally before the tree is
+    //    rebuilt from scratch. Never rebuilds by default; 0 always does.
+    public BuildOptions setMaxInsertionDrift(double maxInsertionDrift) {
+        if (!(maxInsertionDrift >= 0.0)) {
+            throw new IllegalArgumentException("Insertion drift must be at least 0: " + maxInsertionDrift);
+        }
+        this.maxInsertionDrift = maxInsertionDrift;
+        return this;
+    }
+
+    public DistanceMatrixCache getDistanceCache() {
+        return this.distanceCache;
+    }
+
+    //  Reuses all-pairs distances stored in distanceCache, and stores the
+    //  ones computed. No cache (null) by default.
+    public BuildOptions setDistanceCache(DistanceMatrixCache distanceCache) {
+        this.distanceCache = distanceCache;
+        return this;
+    }
+
+    public long getDistanceHeapBudget() {
+        return this.distanceHeapBudget;
+    }
+
+    //  - Distance matrices of more than distanceHeapBudget bytes (as
+    //    doubles) are kept in a memory-mapped file in the spill directory
+    //    instead of on the heap. Half the maximum heap by default.
+    public BuildOptions setDistanceHeapBudget(long distanceHeapBudget) {
+        if (distanceHeapBudget < 0) {
+            throw new IllegalArgumentException("Heap budget must not be negative: " + distanceHeapBudget);
+        }
+        this.distanceHeapBudget = distanceHeapBudget;
+        return this;
+    }
+
+    public boolean isFloat32Distances() {
+        return this.float32Distances;
+    }
+
+    //  Stores memory-mapped distance matrices as float32, halving their
+    //  size at the cost of precision. Off by default.
+    public BuildOptions setFloat32Distances(boolean float32Distances) {
+        this.float32Distances = float32Distances;
+        return this;
+    }
+
+    public Path getSpillDirectory() {
+        return this.spillDirectory;
+    }
+
+    //  Where memory-mapped distance matrices are created; java.io.tmpdir
+    //  by default
+    public BuildOptions setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    public PhaseMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    //  Adds the time and allocation of each phase of building a tree to
+    //  metrics. None (null) by default.
+    public BuildOptions setMetrics(PhaseMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+}
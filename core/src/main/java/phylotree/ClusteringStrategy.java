@@ -0,0 +1,21 @@
+package phylotree;
+
+/*
+ * A method for turning a distance matrix into a binary tree by merging
+ * clusters two at a time. PhyloTree builds one node per reported merge,
+ * with a branch of distance / 2 to each child.
+ */
+
+public interface ClusteringStrategy {
+    ClusteringStrategy UPGMA = new LinkageClusterer(LinkageClusterer.Linkage.UPGMA);
+    ClusteringStrategy WPGMA = new LinkageClusterer(LinkageClusterer.Linkage.WPGMA);
+    ClusteringStrategy SINGLE_LINKAGE = new LinkageClusterer(LinkageClusterer.Linkage.SINGLE);
+    ClusteringStrategy COMPLETE_LINKAGE = new LinkageClusterer(LinkageClusterer.Linkage.COMPLETE);
+    ClusteringStrategy NEIGHBOR_JOINING = new NeighborJoiningClusterer();
+
+    //  - sizes[i] is the number of leaves in cluster i; it is updated as
+    //    clusters are merged
+    //  - Merges all active clusters of distances into one, reporting every
+    //    merge to listener. distances is used as scratch space.
+    void cluster(DistanceMatrix distances, int[] sizes, MergeListener listener);
+}
@@ -0,0 +1,118 @@
+package phylotree;
+
+import java.util.SplittableRandom;
+
+/*
+ * How many times each alignment column counts towards a distance, for
+ * resampled (bootstrap) alignments: weight 0 drops a column, weight 2
+ * counts it twice. Lets a replicate reuse the original packed sequences
+ * instead of copying resampled ones.
+ *
+ * Weights may also stand for constant columns that are not stored at
+ * all (see SitePatterns): they add to total() and, unless their residue
+ * is a gap or ambiguous, to the compared columns of SiteCounts.
+ */
+
+public class ColumnWeights {
+    private final int[] weights;
+    private final long total;
+    private final long constantCompared, constantExcluded;
+
+    // For 2, 4 and 8 bits per residue: the weight shared by every column
+    // packed into each word, or -1 where they differ, so that kernels can
+    // multiply a word's popcount instead of looking up each lane
+    private final int[] uniform2, uniform4, uniform8;
+
+    //  - weights[c] >= 0 is the weight of column c, not all 0
+    public ColumnWeights(int[] weights) {
+        this(weights, 0, 0);
+    }
+
+    //  - weights[c] >= 0 is the weight of column c
+    //  - constantCompared and constantExcluded >= 0 count the omitted
+    //    constant columns with an unambiguous residue and with a gap or
+    //    ambiguous one
+    //  - Not every column, stored or omitted, may have weight 0
+    public ColumnWeights(int[] weights, long constantCompared, long constantExcluded) {
+        if (constantCompared < 0 || constantExcluded < 0) {
+            throw new IllegalArgumentException("Constant column counts must not be negative");
+        }
+        long sum = constantCompared + constantExcluded;
+        for (int w : weights) {
+            if (w < 0) {
+                throw new IllegalArgumentException("Column weights must not be negative: " + w);
+            }
+            sum += w;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("At least one column must have a weight");
+        }
+        this.weights = weights;
+        this.total = sum;
+        this.constantCompared = constantCompared;
+        this.constantExcluded = constantExcluded;
+        this.uniform2 = uniform(weights, 32);
+        this.uniform4 = uniform(weights, 16);
+        this.uniform8 = uniform(weights, 8);
+    }
+
+    private static int[] uniform(int[] weights, int perWord) {
+        int[] uniform = new int[(weights.length + perWord - 1) / perWord];
+        for (int w = 0; w < uniform.length; w++) {
+            int first = weights[w * perWord];
+            int end = Math.min(weights.length, (w + 1) * perWord);
+            for (int c = w * perWord + 1; c < end && first >= 0; c++) {
+                if (weights[c] != first) {
+                    first = -1;
+                }
+            }
+            uniform[w] = first;
+        }
+        return uniform;
+    }
+
+    //  Draws length columns with replacement from an alignment of length
+    //  columns, as one bootstrap replicate
+    public static ColumnWeights resample(int length, SplittableRandom random) {
+        int[] weights = new int[length];
+        for (int k = 0; k < length; k++) {
+            weights[random.nextInt(length)]++;
+        }
+        return new ColumnWeights(weights);
+    }
+
+    public int length() {
+        return weights.length;
+    }
+
+    public int weight(int column) {
+        return weights[column];
+    }
+
+    //  - bitsPerResidue is 2, 4 or 8 (see SequenceEncoding)
+    //  - Returns, for every packed word, the weight all of its columns
+    //    share, or -1 if they do not
+    int[] uniformWeights(int bitsPerResidue) {
+        switch (bitsPerResidue) {
+            case 2:
+                return uniform2;
+            case 4:
+                return uniform4;
+            default:
+                return uniform8;
+        }
+    }
+
+    // Sum of all weights, including the omitted constant columns
+    public long total() {
+        return total;
+    }
+
+    public long constantCompared() {
+        return constantCompared;
+    }
+
+    public long constantExcluded() {
+        return constantExcluded;
+    }
+}
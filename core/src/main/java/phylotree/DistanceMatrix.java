@@ -0,0 +1,143 @@
+package phylotree;
+
+/*
+ * Symmetric distance matrix over clusters identified by integer ids
+ * 0..n-1, stored as a condensed upper triangle in a DistanceStorage:
+ * unboxed doubles on the heap in DistanceMatrixBuilder.index order, or
+ * a tiled memory-mapped file for matrices larger than the heap. Clusters
+ * can be deactivated as they are merged away; the matrix keeps the
+ * remaining active ids in ascending order so scans visit pairs in a
+ * fixed, reproducible order.
+ */
+
+public class DistanceMatrix {
+    //  The closest pair of active clusters, i < j
+    public record Pair(int i, int j, double distance) {
+    }
+
+    private final int n;
+    private final DistanceStorage condensed;
+    private final int[] active;      // Active ids in ascending order
+    private int activeCount;
+
+    public DistanceMatrix(int n) {
+        this(n, new double[(int) DistanceMatrixBuilder.condensedSize(n)]);
+    }
+
+    //  - condensed holds the upper triangle of an n x n matrix row by row,
+    //    as produced by DistanceMatrixBuilder.build
+    public DistanceMatrix(int n, double[] condensed) {
+        this(n, DistanceStorage.of(condensed));
+    }
+
+    //  - condensed holds the upper triangle of an n x n matrix at the
+    //    positions given by its index
+    public DistanceMatrix(int n, DistanceStorage condensed) {
+        if (condensed.size() != DistanceMatrixBuilder.condensedSize(n)) {
+            throw new IllegalArgumentException("Condensed matrix of length " + condensed.size()
+                                               + " does not describe " + n + " clusters");
+        }
+        this.n = n;
+        this.condensed = condensed;
+        this.active = new int[n];
+        for (int i = 0; i < n; i++) {
+            active[i] = i;
+        }
+        this.activeCount = n;
+    }
+
+    public int size() {
+        return this.n;
+    }
+
+    public int activeCount() {
+        return this.activeCount;
+    }
+
+    //  - 0 <= k < activeCount()
+    //  - Returns the k-th smallest active id
+    public int activeId(int k) {
+        return active[k];
+    }
+
+    public double get(int i, int j) {
+        return i < j ? condensed.get(offset(i, j)) : condensed.get(offset(j, i));
+    }
+
+    public void set(int i, int j, double distance) {
+        if (i < j) {
+            condensed.set(offset(i, j), distance);
+        }
+        else {
+            condensed.set(offset(j, i), distance);
+        }
+    }
+
+    //  Removes id from the active set; its distances are ignored from now on
+    public void deactivate(int id) {
+        int k = 0;
+        while (k < activeCount && active[k] != id) {
+            k++;
+        }
+        if (k == activeCount) {
+            throw new IllegalArgumentException("Cluster " + id + " is not active");
+        }
+        System.arraycopy(active, k + 1, active, k, activeCount - k - 1);
+        activeCount--;
+    }
+
+    //  - At least two clusters are active
+    //  - Returns the active pair with the smallest distance; ties go to the
+    //    smallest i, then the smallest j
+    public Pair minPair() {
+        double d = Double.POSITIVE_INFINITY;
+        int bestI = -1, bestJ = -1;
+
+        for (int p = 0; p < activeCount - 1; p++) {
+            int i = active[p];
+            for (int q = p + 1; q < activeCount; q++) {
+                int j = active[q];
+                double value = condensed.get(condensed.index(i, j, n));
+                if (value < d) {
+                    d = value;
+                    bestI = i;
+                    bestJ = j;
+                }
+            }
+        }
+
+        if (bestI < 0) {
+            // Every remaining distance is infinite or NaN; merge in id order
+            bestI = active[0];
+            bestJ = active[1];
+            d = get(bestI, bestJ);
+        }
+        return new Pair(bestI, bestJ, d);
+    }
+
+    //  - i is active
+    //  - Returns the active j > i closest to i (ties go to the smallest j),
+    //    or -1 if there is none or every such distance is infinite or NaN
+    public int nearestAfter(int i) {
+        int p = java.util.Arrays.binarySearch(active, 0, activeCount, i);
+        if (p < 0) {
+            throw new IllegalArgumentException("Cluster " + i + " is not active");
+        }
+
+        double d = Double.POSITIVE_INFINITY;
+        int best = -1;
+        for (int q = p + 1; q < activeCount; q++) {
+            int j = active[q];
+            double value = condensed.get(condensed.index(i, j, n));
+            if (value < d) {
+                d = value;
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    private long offset(int i, int j) {
+        return condensed.index(i, j, n);
+    }
+}
@@ -0,0 +1,189 @@
+package phylotree;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Computes all pairwise distances of an alignment under a DistanceModel
+ * (p-distance by default) into a condensed upper-triangular array: the
+ * distance between species i and j (i < j) is stored at index(i, j, n),
+ * row by row, or wherever the DistanceStorage being filled places it.
+ *
+ * The triangle is cut into square tiles of tileSize x tileSize species,
+ * chosen so that the packed sequences of one tile's rows and columns fit
+ * in a core's L2 cache, and the tiles are spread over a ForkJoinPool.
+ * Every pair is computed exactly once and tiles never share output
+ * slots, so no synchronisation is needed beyond the final join.
+ */
+
+public class DistanceMatrixBuilder {
+    private static final int L2_CACHE_BYTES = 256 * 1024;
+    private static final int MAX_TILE_SIZE = 256;
+
+    // Below this many pairs the pool is not worth starting
+    private static final long SEQUENTIAL_PAIRS = 4096;
+
+    private final int parallelism;
+    private PhaseMetrics.Recorder recorder;
+    private ColumnWeights weights;
+    private DistanceModel model = DistanceModel.P_DISTANCE;
+
+    public DistanceMatrixBuilder(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    //  Reports the CPU time and allocation of the worker threads to recorder
+    DistanceMatrixBuilder measuring(PhaseMetrics.Recorder recorder) {
+        this.recorder = recorder;
+        return this;
+    }
+
+    //  Weighs the columns of the alignment by weights (see ColumnWeights)
+    //  instead of counting each once
+    public DistanceMatrixBuilder weighted(ColumnWeights weights) {
+        this.weights = weights;
+        return this;
+    }
+
+    //  Computes distances under model instead of as p-distances
+    public DistanceMatrixBuilder withModel(DistanceModel model) {
+        this.model = model;
+        return this;
+    }
+
+    // Position of the pair (i, j), i < j, in a condensed matrix over n species
+    public static long index(int i, int j, int n) {
+        return (long) i * n - (long) i * (i + 1) / 2 + (j - i - 1);
+    }
+
+    public static long condensedSize(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    public double[] build(Species[] species) {
+        int n = species.length;
+        long size = condensedSize(n);
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many species for an in-memory distance matrix: " + n);
+        }
+        double[] matrix = new double[(int) size];
+        build(species, DistanceStorage.of(matrix));
+        return matrix;
+    }
+
+    //  - matrix holds condensedSize(species.length) values
+    //  - Fills matrix with the distances of species
+    public void build(Species[] species, DistanceStorage matrix) {
+        int n = species.length;
+        long size = condensedSize(n);
+        if (matrix.size() != size) {
+            throw new IllegalArgumentException("Storage of " + matrix.size() + " values does not fit "
+                                               + n + " species");
+        }
+        if (n < 2) {
+            return;
+        }
+
+        int tileSize = tileSize(species[0]);
+        int blocks = (n + tileSize - 1) / tileSize;
+        int tiles = blocks * (blocks + 1) / 2;
+
+        if (parallelism == 1 || size <= SEQUENTIAL_PAIRS) {
+            for (int t = 0; t < tiles; t++) {
+                computeTile(species, matrix, model, weights, tileSize, t, blocks);
+            }
+        }
+        else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new TileRange(species, matrix, model, weights, tileSize, blocks, 0, tiles,
+                                          recorder != null && recorder.isEnabled() ? recorder : null));
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Largest tile whose row and column sequences together fit in L2
+    private static int tileSize(Species sample) {
+        long bytesPerSpecies = Math.max(8L, (long) sample.getEncoding().wordsFor(sample.getLength()) * 8);
+        long fit = L2_CACHE_BYTES / (2 * bytesPerSpecies);
+        return (int) Math.max(1, Math.min(MAX_TILE_SIZE, fit));
+    }
+
+    //  - t numbers the tiles (bi, bj), bi <= bj, of the upper triangle row by row
+    //  - Fills every pair i < j with i in block bi and j in block bj
+    private static void computeTile(Species[] species, DistanceStorage matrix, DistanceModel model,
+                                    ColumnWeights weights, int tileSize, int t, int blocks) {
+        int bi = 0;
+        int rowTiles = blocks;
+        while (t >= rowTiles) {
+            t -= rowTiles;
+            bi++;
+            rowTiles--;
+        }
+        int bj = bi + t;
+
+        int n = species.length;
+        int iEnd = Math.min(n, (bi + 1) * tileSize);
+        int jStart = bj * tileSize;
+        int jEnd = Math.min(n, jStart + tileSize);
+        SiteCounts counts = new SiteCounts();
+
+        for (int i = bi * tileSize; i < iEnd; i++) {
+            for (int j = Math.max(jStart, i + 1); j < jEnd; j++) {
+                matrix.set(matrix.index(i, j, n), model.distance(species[i], species[j], weights, counts));
+            }
+        }
+    }
+
+    // Splits a range of tiles in halves until a single tile remains
+    private static class TileRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Species[] species;
+        private final DistanceStorage matrix;
+        private final int tileSize, blocks, from, to;
+        private final PhaseMetrics.Recorder recorder;   // Null when not measuring
+        private final DistanceModel model;
+        private final ColumnWeights weights;
+
+        TileRange(Species[] species, DistanceStorage matrix, DistanceModel model, ColumnWeights weights,
+                  int tileSize, int blocks, int from, int to, PhaseMetrics.Recorder recorder) {
+            this.species = species;
+            this.matrix = matrix;
+            this.tileSize = tileSize;
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.recorder = recorder;
+            this.model = model;
+            this.weights = weights;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 && recorder == null) {
+                computeTile(species, matrix, model, weights, tileSize, from, blocks);
+            }
+            else if (to - from == 1) {
+                long cpu = PhaseMetrics.Recorder.currentCpu();
+                long allocated = PhaseMetrics.Recorder.currentAllocated();
+                computeTile(species, matrix, model, weights, tileSize, from, blocks);
+                recorder.addWorkerUsage(PhaseMetrics.Recorder.currentCpu() - cpu,
+                                        PhaseMetrics.Recorder.currentAllocated() - allocated);
+            }
+            else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileRange(species, matrix, model, weights, tileSize, blocks, from, mid,
+                                        recorder),
+                          new TileRange(species, matrix, model, weights, tileSize, blocks, mid, to,
+                                        recorder));
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package phylotree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * On-disk cache of condensed distance matrices (see DistanceMatrixBuilder),
+ * keyed by the SHA-256 of the distance model and the packed sequences in
+ * alignment order. Names do not take part in the key, so renamed copies
+ * of an alignment share one entry.
+ *
+ * Each entry is one file, <key>.dm:
+ *
+ *   "PHYC", int version, int species count, the 32 key bytes, then the
+ *   condensed distances as little-endian float64
+ *
+ * Entries are written to a temporary file and atomically renamed into
+ * place, so readers never see a partial entry. Hits refresh the file's
+ * modification time; when the directory grows beyond its size bound the
+ * least recently used entries are deleted. Insertion and eviction hold an
+ * exclusive lock on the directory's .lock file, so several Driver
+ * processes can share one cache.
+ */
+
+public class DistanceMatrixCache {
+    private static final int MAGIC = ('P' << 24) | ('H' << 16) | ('Y' << 8) | 'C';
+    private static final int VERSION = 1;
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = 4 * 3 + KEY_BYTES;
+    private static final String SUFFIX = ".dm";
+
+    // File locks are held per process; threads of this one queue here first
+    private static final Object PROCESS_LOCK = new Object();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    //  - maxBytes > 0 bounds the total size of the entries in directory,
+    //    which is created if needed
+    public DistanceMatrixCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    //  Returns the cached distances of species under model, or computes
+    //  them with compute and stores them. I/O problems with the cache only
+    //  cost the computation; they are reported on standard error.
+    public double[] computeIfAbsent(Species[] species, String model, Supplier<double[]> compute) {
+        byte[] key = key(species, model);
+        Path entry = directory.resolve(hex(key) + SUFFIX);
+
+        double[] cached = null;
+        try {
+            cached = read(entry, key, species.length);
+        }
+        catch (IOException e) {
+            System.err.println("Warning: Ignoring unreadable cache entry " + entry + ": " + e.getMessage());
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        double[] distances = compute.get();
+        try {
+            store(entry, key, species.length, distances);
+        }
+        catch (IOException e) {
+            System.err.println("Warning: Unable to write cache entry " + entry + ": " + e.getMessage());
+        }
+        return distances;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Null if there is no valid entry
+    private static double[] read(Path entry, byte[] key, int n) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            long expected = HEADER_BYTES + 8 * DistanceMatrixBuilder.condensedSize(n);
+            if (channel.size() != expected || expected > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = ByteBuffer.allocate((int) expected);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+        buffer.flip();
+
+        byte[] storedKey = new byte[KEY_BYTES];
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != n) {
+            return null;
+        }
+        buffer.get(storedKey);
+        if (!MessageDigest.isEqual(key, storedKey)) {
+            return null;
+        }
+        double[] distances = new double[(int) DistanceMatrixBuilder.condensedSize(n)];
+        buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(distances);
+
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException e) {
+            // Evicted meanwhile; the distances read are still good
+        }
+        return distances;
+    }
+
+    private void store(Path entry, byte[] key, int n, double[] distances) throws IOException {
+        long bytes = HEADER_BYTES + 8L * distances.length;
+        if (bytes > maxBytes) {
+            return;
+        }
+
+        Path temp = Files.createTempFile(directory, ".entry", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putInt(n).put(key).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                ByteBuffer body = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+                for (int k = 0; k < distances.length; ) {
+                    int chunk = Math.min(body.capacity() / 8, distances.length - k);
+                    body.asDoubleBuffer().put(distances, k, chunk);
+                    body.limit(8 * chunk);
+                    while (body.hasRemaining()) {
+                        channel.write(body);
+                    }
+                    body.clear();
+                    k += chunk;
+                }
+            }
+
+            synchronized (PROCESS_LOCK) {
+                try (FileChannel lockChannel = FileChannel.open(directory.resolve(".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    // Held across the move and the eviction it may trigger
+                    FileLock lock = lockChannel.lock();
+                    try {
+                        Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        evict(entry);
+                    }
+                    finally {
+                        lock.release();
+                    }
+                }
+            }
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Deletes least recently used entries, other than keep, until the
+    // cache fits in maxBytes. Called with the directory locked.
+    private void evict(Path keep) throws IOException {
+        List<Path> entries = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                entries.add(path);
+            }
+        }
+
+        long total = 0;
+        List<FileTime> times = new ArrayList<FileTime>();
+        List<Long> sizes = new ArrayList<Long>();
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                times.add(Files.getLastModifiedTime(entries.get(i)));
+                sizes.add(Files.size(entries.get(i)));
+            }
+            catch (NoSuchFileException e) {
+                times.add(FileTime.fromMillis(Long.MAX_VALUE));
+                sizes.add(0L);
+            }
+            total += sizes.get(i);
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(times::get));
+        for (int i : order) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (!entries.get(i).equals(keep)) {
+                Files.deleteIfExists(entries.get(i));
+                total -= sizes.get(i);
+            }
+        }
+    }
+
+    private static byte[] key(Species[] species, String model) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        byte[] modelBytes = model.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        buffer.putInt(modelBytes.length).put(modelBytes).putInt(species.length);
+        for (Species s : species) {
+            if (buffer.remaining() < 5) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+            buffer.put((byte) s.getEncoding().ordinal()).putInt(s.getLength());
+            for (long word : s.words()) {
+                if (buffer.remaining() < 8) {
+                    digest.update(buffer.flip());
+                    buffer.clear();
+                }
+                buffer.putLong(word);
+            }
+        }
+        digest.update(buffer.flip());
+        return digest.digest();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package phylotree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Streams a symmetric distance matrix over labelled species to a channel
+ * through one reusable buffer. Formats:
+ *
+ *   TEXT     one "EvDistance(a,b) = 0.00" line per ordered pair, the
+ *            format of Driver's .distances files
+ *   BINARY   little-endian: the bytes "PHYD", int version (1), int n,
+ *            n labels as (int length, UTF-8 bytes), then the upper
+ *            triangle (i < j, row by row) as float32
+ *   PHYLIP   square PHYLIP: the number of species, then one row per
+ *            species with its name and its n distances
+ */
+
+public class DistanceMatrixWriter {
+    public enum Format {
+        TEXT,
+        BINARY,
+        PHYLIP
+    }
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int BINARY_VERSION = 1;
+    // A formatted double has at most about 330 characters (Double.MAX_VALUE
+    // in full), of up to 4 bytes each, plus the space before it
+    private static final int MAX_NUMBER_BYTES = 2048;
+
+    private final Format format;
+    private final Charset charset;
+    private final byte[] newline;
+
+    public DistanceMatrixWriter(Format format) {
+        this.format = format;
+        this.charset = Charset.defaultCharset();
+        this.newline = System.lineSeparator().getBytes(charset);
+    }
+
+    public void write(String[] labels, DistanceMatrix distances, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(labels, distances, channel);
+        }
+    }
+
+    //  - labels[i] names row and column i of distances
+    //  - Returns the number of bytes written
+    public long write(String[] labels, DistanceMatrix distances, WritableByteChannel channel) throws IOException {
+        if (labels.length != distances.size()) {
+            throw new IllegalArgumentException(labels.length + " labels for a matrix of " + distances.size());
+        }
+        Output out = new Output(channel);
+        switch (format) {
+            case TEXT:
+                writeText(labels, distances, out);
+                break;
+            case BINARY:
+                writeBinary(labels, distances, out);
+                break;
+            default:
+                writePhylip(labels, distances, out);
+        }
+        out.flush();
+        return out.written;
+    }
+
+    private void writeText(String[] labels, DistanceMatrix distances, Output out) throws IOException {
+        FixedDecimalFormat formatter = new FixedDecimalFormat(2);
+        byte[][] encoded = encode(labels);
+        byte[] prefix = "EvDistance(".getBytes(charset);
+        byte[] comma = ",".getBytes(charset);
+        byte[] equals = ") = ".getBytes(charset);
+
+        int n = labels.length;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                out.ensure(prefix.length + encoded[i].length + encoded[j].length + MAX_NUMBER_BYTES);
+                ByteBuffer buffer = out.buffer;
+                buffer.put(prefix).put(encoded[i]).put(comma).put(encoded[j]).put(equals);
+                formatter.format(i == j ? 0.0 : distances.get(i, j), buffer, charset);
+                buffer.put(newline);
+            }
+        }
+    }
+
+    private void writeBinary(String[] labels, DistanceMatrix distances, Output out) throws IOException {
+        byte[][] encoded = new byte[labels.length][];
+        for (int i = 0; i < labels.length; i++) {
+            encoded[i] = labels[i].getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        }
+
+        out.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        out.ensure(12);
+        out.buffer.put((byte) 'P').put((byte) 'H').put((byte) 'Y').put((byte) 'D');
+        out.buffer.putInt(BINARY_VERSION).putInt(labels.length);
+        for (byte[] label : encoded) {
+            out.ensure(4 + label.length);
+            out.buffer.putInt(label.length).put(label);
+        }
+
+        int n = labels.length;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                out.ensure(4);
+                out.buffer.putFloat((float) distances.get(i, j));
+            }
+        }
+    }
+
+    private void writePhylip(String[] labels, DistanceMatrix distances, Output out) throws IOException {
+        FixedDecimalFormat formatter = new FixedDecimalFormat(6);
+        byte[][] encoded = encode(labels);
+        byte[] space = " ".getBytes(charset);
+
+        int n = labels.length;
+        out.ensure(32);
+        out.buffer.put(String.valueOf(n).getBytes(charset)).put(newline);
+        for (int i = 0; i < n; i++) {
+            out.ensure(encoded[i].length + 1);
+            out.buffer.put(encoded[i]);
+            for (int j = 0; j < n; j++) {
+                out.ensure(MAX_NUMBER_BYTES);
+                out.buffer.put(space);
+                formatter.format(i == j ? 0.0 : distances.get(i, j), out.buffer, charset);
+            }
+            out.ensure(newline.length);
+            out.buffer.put(newline);
+        }
+    }
+
+    private byte[][] encode(String[] labels) {
+        byte[][] encoded = new byte[labels.length][];
+        for (int i = 0; i < labels.length; i++) {
+            encoded[i] = labels[i].getBytes(charset);
+        }
+        return encoded;
+    }
+
+    // A buffer drained into the channel whenever it runs out of room
+    private static class Output {
+        final WritableByteChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        long written;
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.remaining() < bytes) {
+                    throw new IOException("Record of " + bytes + " bytes does not fit the output buffer");
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
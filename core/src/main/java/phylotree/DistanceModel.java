@@ -0,0 +1,129 @@
+package phylotree;
+
+/*
+ * How a pairwise distance is derived from the SiteCounts of two aligned
+ * sequences:
+ *
+ *   P_DISTANCE          differing columns / all columns, gaps and
+ *                       ambiguity codes compared as ordinary residues.
+ *                       The original measure and the default.
+ *   PAIRWISE_DELETION   differing columns / columns where both residues
+ *                       are unambiguous
+ *   JUKES_CANTOR        JC69 correction of the pairwise-deletion p:
+ *                       -3/4 ln(1 - 4/3 p)
+ *   KIMURA_2P           K2P correction with transition proportion P and
+ *                       transversion proportion Q over the compared
+ *                       columns: -1/2 ln(1 - 2P - Q) - 1/4 ln(1 - 2Q)
+ *
+ * The corrected models assume nucleotide sequences; differences between
+ * other residues are neither transitions nor transversions, so KIMURA_2P
+ * underestimates protein distances. Pairs that are too divergent for a
+ * correction (its logarithm undefined, or the result beyond SATURATED)
+ * or that share no compared column get SATURATED, so that every
+ * clustering strategy still sees a finite distance.
+ */
+
+public enum DistanceModel {
+    P_DISTANCE("p-distance") {
+        @Override
+        public double distance(SiteCounts counts) {
+            return (double) counts.differences / counts.sites;
+        }
+
+        @Override
+        double distance(Species a, Species b, ColumnWeights weights, SiteCounts scratch) {
+            // Only needs the raw differences, which HammingKernel counts faster
+            return weights == null ? Species.distance(a, b) : Species.distance(a, b, weights);
+        }
+    },
+
+    PAIRWISE_DELETION("pairwise-deletion") {
+        @Override
+        public double distance(SiteCounts counts) {
+            if (counts.compared == 0) {
+                return SATURATED;
+            }
+            return (double) counts.comparedDifferences / counts.compared;
+        }
+    },
+
+    JUKES_CANTOR("jukes-cantor") {
+        @Override
+        public double distance(SiteCounts counts) {
+            if (counts.compared == 0) {
+                return SATURATED;
+            }
+            double p = (double) counts.comparedDifferences / counts.compared;
+            return correct(-0.75 * Math.log(1.0 - 4.0 / 3.0 * p));
+        }
+    },
+
+    KIMURA_2P("kimura-2p") {
+        @Override
+        public double distance(SiteCounts counts) {
+            if (counts.compared == 0) {
+                return SATURATED;
+            }
+            double p = (double) counts.transitions / counts.compared;
+            double q = (double) counts.transversions / counts.compared;
+            return correct(-0.5 * Math.log(1.0 - 2.0 * p - q) - 0.25 * Math.log(1.0 - 2.0 * q));
+        }
+    };
+
+    // Expected substitutions per site given to saturated pairs
+    public static final double SATURATED = 10.0;
+
+    private final String key;
+
+    DistanceModel(String key) {
+        this.key = key;
+    }
+
+    // Name on the command line and in DistanceMatrixCache keys
+    public String key() {
+        return this.key;
+    }
+
+    public static DistanceModel forKey(String key) {
+        for (DistanceModel model : values()) {
+            if (model.key.equals(key)) {
+                return model;
+            }
+        }
+        throw new IllegalArgumentException("Unknown distance model: " + key);
+    }
+
+    public abstract double distance(SiteCounts counts);
+
+    public double distance(Species a, Species b) {
+        return distance(a, b, null, new SiteCounts());
+    }
+
+    //  - weights is null, or holds one weight per column
+    //  - scratch is overwritten
+    double distance(Species a, Species b, ColumnWeights weights, SiteCounts scratch) {
+        SubstitutionKernel.count(a, b, weights, scratch);
+        return distance(scratch);
+    }
+
+    //  - p is an estimated p-distance, e.g. from MinHashSketch
+    //  - Returns the distance this model would give a pair with p-distance
+    //    p, with no gaps or ambiguity. Without separate transition and
+    //    transversion counts, KIMURA_2P falls back to the Jukes-Cantor
+    //    correction.
+    double estimate(double p) {
+        switch (this) {
+            case JUKES_CANTOR:
+            case KIMURA_2P:
+                return correct(-0.75 * Math.log(1.0 - 4.0 / 3.0 * p));
+            default:
+                return p;
+        }
+    }
+
+    // NaN (log of a negative number) and values past SATURATED saturate;
+    // -0.0 from identical sequences becomes 0
+    private static double correct(double distance) {
+        return distance < SATURATED ? distance + 0.0 : SATURATED;
+    }
+}
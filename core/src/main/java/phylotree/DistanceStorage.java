@@ -0,0 +1,43 @@
+package phylotree;
+
+/*
+ * Backing store of a condensed distance matrix: one value per pair of
+ * clusters, at the position given by index. The heap store keeps
+ * DistanceMatrixBuilder.index order; a store may lay pairs out
+ * differently and hold slots that no pair uses (see
+ * MappedDistanceStorage). Values may be stored with less precision than
+ * a double. Distinct positions may be written by different threads at
+ * once.
+ */
+
+public interface DistanceStorage {
+    // Number of pairs stored
+    long size();
+
+    double get(long index);
+
+    void set(long index, double distance);
+
+    //  - i < j < n, where the store holds an n x n matrix
+    //  - Returns the position of the pair (i, j)
+    default long index(int i, int j, int n) {
+        return DistanceMatrixBuilder.index(i, j, n);
+    }
+
+    //  Keeps the values in a double[] on the heap
+    static DistanceStorage of(double[] condensed) {
+        return new DistanceStorage() {
+            public long size() {
+                return condensed.length;
+            }
+
+            public double get(long index) {
+                return condensed[(int) index];
+            }
+
+            public void set(long index, double distance) {
+                condensed[(int) index] = distance;
+            }
+        };
+    }
+}
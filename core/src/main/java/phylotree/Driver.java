@@ -0,0 +1,161 @@
+package phylotree;
+
+/*
+ *
+ * Creates PhyloTree objects for each FASTA file in alignment list input file
+ * Infers the hierarhical structure, computes all pairwise evolutionary 
+ * distances, and reports other tree statistics
+ * 
+ * ----------------------------------------------------------------------------
+ *
+ * usage:
+ *
+ * java -jar core/target/phylotree-1.0-SNAPSHOT.jar [-threads n] [-memory mb]
+ *     [-distances format] [-model name] [-cache dir] [-cachesize mb]
+ *     [-report file] [-bootstrap replicates] [-seed n] [-approximate size]
+ *     fastaListFilename outputDir
+ *
+ * where the argument is
+ * 
+ *   fastaListFilename      a plaintext file with one line per FASTA alignment file
+ *   outputDir              a directory where the trees and statistics will be written
+ *   -threads n             how many alignments to process at once 
+ *                          (default: number of processors)
+ *   -memory mb             heap the alignments running together may use
+ *                          (default: three quarters of the maximum heap)
+ *   -distances format      text (default, .distances), binary (float32 upper
+ *                          triangle, .distances.bin) or phylip (.phy)
+ *   -model name            p-distance (default), pairwise-deletion,
+ *                          jukes-cantor or kimura-2p (see DistanceModel)
+ *   -cache dir             reuse all-pairs distances computed by earlier runs
+ *                          for identical alignments, kept in dir
+ *   -cachesize mb          how large the cache directory may grow 
+ *                          (default: 1024)
+ *   -report file           write the wall time, CPU time and allocation of
+ *                          each phase of every alignment to file, one JSON
+ *                          object per line (see PhaseMetrics)
+ *   -bootstrap replicates  add bootstrap support to the .tree files and write
+ *                          a majority-rule .consensus.tree for each alignment
+ *   -seed n                seed of the bootstrap replicates (default: 1)
+ *   -approximate size      cluster alignments of more than size sequences
+ *                          from k-mer sketches, and only subtrees of up to
+ *                          size sequences from exact distances (see
+ *                          SketchClusterer); for very large alignments
+ *
+*/
+
+import java.util.*;
+import java.io.*;
+
+public class Driver {
+    private static final int PRINTING_DEPTH = 100;
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long memoryBudget = Runtime.getRuntime().maxMemory() / 4 * 3;
+        DistanceMatrixWriter.Format distanceFormat = DistanceMatrixWriter.Format.TEXT;
+        DistanceModel model = DistanceModel.P_DISTANCE;
+        String cacheDir = null;
+        long cacheSize = 1024L * 1024 * 1024;
+        String reportFile = null;
+        int replicates = 0;
+        long seed = 1;
+        int refinementSize = 0;
+
+        int arg = 0;
+        try {
+            for (; arg < args.length && args[arg].startsWith("-"); arg += 2) {
+                if (arg + 1 >= args.length) {
+                    throw new IllegalArgumentException();
+                }
+                else if (args[arg].equals("-threads")) {
+                    threads = Integer.parseInt(args[arg + 1]);
+                }
+                else if (args[arg].equals("-memory")) {
+                    memoryBudget = Long.parseLong(args[arg + 1]) * 1024 * 1024;
+                }
+                else if (args[arg].equals("-distances")) {
+                    distanceFormat = DistanceMatrixWriter.Format.valueOf(args[arg + 1].toUpperCase());
+                }
+                else if (args[arg].equals("-model")) {
+                    model = DistanceModel.forKey(args[arg + 1]);
+                }
+                else if (args[arg].equals("-cache")) {
+                    cacheDir = args[arg + 1];
+                }
+                else if (args[arg].equals("-bootstrap")) {
+                    replicates = Integer.parseInt(args[arg + 1]);
+                }
+                else if (args[arg].equals("-seed")) {
+                    seed = Long.parseLong(args[arg + 1]);
+                }
+                else if (args[arg].equals("-approximate")) {
+                    refinementSize = Integer.parseInt(args[arg + 1]);
+                    if (refinementSize < 0 || refinementSize == 1) {
+                        throw new IllegalArgumentException();
+                    }
+                }
+                else if (args[arg].equals("-report")) {
+                    reportFile = args[arg + 1];
+                }
+                else if (args[arg].equals("-cachesize")) {
+                    cacheSize = Long.parseLong(args[arg + 1]) * 1024 * 1024;
+                }
+                else {
+                    throw new IllegalArgumentException();
+                }
+            }
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println("Error: Bad option " + args[arg]);
+            System.exit(2);
+        }
+
+        if (args.length - arg != 2) {
+            System.err.println("Error: Wrong number of arguments. Need fasta list file and output directory.");
+            System.exit(2);
+        }
+    
+        String fastaListFilename = args[arg];
+        String outputDir = args[arg + 1];
+        Scanner input = null;
+        File inputFile = new File(fastaListFilename);
+
+        try {
+            input = new Scanner(inputFile);
+        } 
+	     catch (FileNotFoundException e) {
+            System.err.println("Error: Unable to open file: " + fastaListFilename);
+            System.exit(1);
+        }
+
+        ArrayList<String> fastaFilenames = new ArrayList<String>();
+        while (input.hasNext()) {
+            fastaFilenames.add(input.next());
+        }
+        input.close();
+
+        DistanceMatrixCache cache = null;
+        if (cacheDir != null) {
+            try {
+                cache = new DistanceMatrixCache(new File(cacheDir).toPath(), cacheSize);
+            }
+            catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error: Unable to use cache directory " + cacheDir + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        BatchRunner runner = new BatchRunner(outputDir, PRINTING_DEPTH, Math.max(1, threads), memoryBudget,
+                                             distanceFormat, cache);
+        runner.setDistanceModel(model);
+        runner.setApproximateRefinement(refinementSize);
+        if (reportFile != null) {
+            runner.setReportFile(new File(reportFile).toPath());
+        }
+        if (replicates > 0) {
+            runner.setBootstrap(replicates, seed);
+        }
+        runner.run(fastaFilenames);
+    }
+}
@@ -0,0 +1,108 @@
+package phylotree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Groups the species of an alignment whose packed sequences are identical.
+ * Each group is represented by its first member, in input order, so that
+ * the all-pairs distances and the clustering only need one row per
+ * distinct sequence. Identical sequences are at distance 0 from each other
+ * and at the same distance from everything else, so a linkage clustering
+ * of the representatives, with each starting as a cluster of its group's
+ * size, merges the same clusters at the same heights as a clustering of
+ * every species would once the duplicates have joined at height 0.
+ */
+
+public class DuplicateSequences {
+    private final Species[] unique;
+    private final int[][] members;
+
+    private DuplicateSequences(Species[] unique, int[][] members) {
+        this.unique = unique;
+        this.members = members;
+    }
+
+    //  - species is an aligned set
+    //  - Sequences are compared by encoding, length and packed words
+    public static DuplicateSequences of(Species[] species) {
+        Map<Key,Integer> groups = new HashMap<Key,Integer>(2 * species.length);
+        List<Species> unique = new ArrayList<Species>();
+        List<List<Integer>> members = new ArrayList<List<Integer>>();
+        for (int i = 0; i < species.length; i++) {
+            Integer group = groups.putIfAbsent(new Key(species[i]), unique.size());
+            if (group == null) {
+                unique.add(species[i]);
+                List<Integer> first = new ArrayList<Integer>(1);
+                first.add(i);
+                members.add(first);
+            }
+            else {
+                members.get(group).add(i);
+            }
+        }
+
+        int[][] indices = new int[members.size()][];
+        for (int g = 0; g < indices.length; g++) {
+            List<Integer> group = members.get(g);
+            indices[g] = new int[group.size()];
+            for (int k = 0; k < indices[g].length; k++) {
+                indices[g][k] = group.get(k);
+            }
+        }
+        return new DuplicateSequences(unique.toArray(new Species[0]), indices);
+    }
+
+    // One species per distinct sequence, in order of first occurrence
+    public Species[] getUnique() {
+        return unique;
+    }
+
+    // Indices into the input of the species sharing the sequence of
+    // getUnique()[group], in input order, the representative first
+    public int[] getMembers(int group) {
+        return members[group].clone();
+    }
+
+    public int getGroupSize(int group) {
+        return members[group].length;
+    }
+
+    // Number of species that are a copy of an earlier one
+    public int getDuplicateCount() {
+        int total = 0;
+        for (int[] group : members) {
+            total += group.length - 1;
+        }
+        return total;
+    }
+
+    // A sequence compared by content rather than identity
+    private static class Key {
+        private final Species species;
+        private final int hash;
+
+        Key(Species species) {
+            this.species = species;
+            this.hash = 31 * Arrays.hashCode(species.words()) + species.getLength();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Species other = ((Key) o).species;
+            return species.getEncoding() == other.getEncoding() && species.getLength() == other.getLength()
+                   && Arrays.equals(species.words(), other.words());
+        }
+    }
+}
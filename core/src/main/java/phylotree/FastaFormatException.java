@@ -0,0 +1,23 @@
+package phylotree;
+
+import java.io.IOException;
+
+/*
+ * Thrown when a FASTA file cannot be parsed. Carries the byte offset in
+ * the file at which the problem was found.
+ */
+
+public class FastaFormatException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long offset;
+
+    public FastaFormatException(String file, long offset, String message) {
+        super(file + " at byte " + offset + ": " + message);
+        this.offset = offset;
+    }
+
+    public long getOffset() {
+        return this.offset;
+    }
+}
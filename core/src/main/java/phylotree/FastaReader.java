@@ -0,0 +1,221 @@
+package phylotree;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/*
+ * Reads an aligned FASTA file straight into packed Species.
+ *
+ * The file is memory-mapped in windows of at most WINDOW_BYTES and read
+ * twice. The first pass collects the residue alphabet and the length of
+ * every sequence, which fixes the SequenceEncoding and the exact size of
+ * each packed array. The second pass packs residues directly from the
+ * mapped bytes into those arrays, so no per-residue or per-line objects
+ * are created whatever the size of the alignment.
+ *
+ * A species' name is the last '|'-separated field of its header line.
+ * Blank lines and '\r' line endings are ignored. Every sequence must have
+ * as many residues as the first, or the first pass rejects the file.
+ */
+
+public class FastaReader {
+    private static final long WINDOW_BYTES = 1L << 28;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer window;    // Mapping of [windowStart, windowStart + window.limit())
+    private long windowStart;
+    private long position;              // Offset of the next byte to read
+
+    private byte[] header = new byte[256];
+    private int[] lengths = new int[16];     // Residue count of every sequence
+
+    private FastaReader(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    public static Species[] read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new FastaReader(file, channel).read();
+        }
+    }
+
+    //  Counts the header lines of a FASTA file without parsing it, e.g. to
+    //  estimate the cost of an alignment before loading it
+    public static int countSequences(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FastaReader reader = new FastaReader(file, channel);
+            int count = 0;
+            boolean lineStart = true;
+            while (reader.position < reader.size) {
+                int b = reader.next();
+                if (lineStart && b == '>') {
+                    count++;
+                }
+                lineStart = b == '\n';
+            }
+            return count;
+        }
+    }
+
+    private Species[] read() throws IOException {
+        // Pass 1: alphabet and sequence lengths
+        boolean[] present = new boolean[256];
+        int count = scan(present, null, null);
+        if (count == 0) {
+            throw new FastaFormatException(file.toString(), 0, "no sequences found");
+        }
+
+        // Pass 2: pack residues using one encoding for the whole alignment
+        SequenceEncoding encoding = SequenceEncoding.narrowest(present);
+        Species[] species = new Species[count];
+        scan(null, encoding, species);
+        return species;
+    }
+
+    //  Runs one pass over the file. With species == null it records the
+    //  residues present and the length of every sequence; otherwise it
+    //  packs sequence k with encoding into species[k]. Returns the number
+    //  of sequences.
+    private int scan(boolean[] present, SequenceEncoding encoding, Species[] species) throws IOException {
+        position = 0;
+        window = null;
+
+        int count = 0;               // Sequences started so far
+        int residues = 0;            // Residues read for the current one
+        long recordStart = 0;        // Offset of the current one's header
+        String name = null;
+        long[] packed = null;
+        int bits = encoding == null ? 0 : encoding.bitsPerResidue();
+        int perWord = encoding == null ? 0 : encoding.residuesPerWord();
+        boolean lineStart = true;
+
+        while (position < size) {
+            long offset = position;
+            int b = next();
+
+            if (lineStart && b == '>') {
+                if (count > 0) {
+                    finish(count - 1, recordStart, name, residues, packed, encoding, species);
+                }
+                recordStart = offset;
+                name = readHeader(species != null);
+                if (species != null) {
+                    packed = new long[encoding.wordsFor(lengths[count])];
+                }
+                count++;
+                residues = 0;
+                continue;
+            }
+
+            if (b == '\n') {
+                lineStart = true;
+                continue;
+            }
+            lineStart = false;
+            if (b == '\r') {
+                continue;
+            }
+
+            if (count == 0) {
+                throw new FastaFormatException(file.toString(), offset, "expected a '>' header line");
+            }
+            if (b >= 128) {
+                throw new FastaFormatException(file.toString(), offset, "non-ASCII residue 0x" + Integer.toHexString(b));
+            }
+
+            if (species == null) {
+                present[b] = true;
+            }
+            else {
+                if (residues == lengths[count - 1]) {
+                    throw new FastaFormatException(file.toString(), offset, "file changed while being read");
+                }
+                packed[residues / perWord] |= ((long) encoding.encode((char) b)) << ((residues % perWord) * bits);
+            }
+            residues++;
+        }
+
+        if (count > 0) {
+            finish(count - 1, recordStart, name, residues, packed, encoding, species);
+        }
+        return count;
+    }
+
+    //  Completes sequence number k, whose header starts at recordStart and
+    //  which has the given number of residues
+    private void finish(int k, long recordStart, String name, int residues, long[] packed,
+                        SequenceEncoding encoding, Species[] species) throws IOException {
+        if (species == null) {
+            if (k > 0 && residues != lengths[0]) {
+                throw new FastaFormatException(file.toString(), recordStart, "sequence " + (k + 1) + " has "
+                                               + residues + " residues, the first has " + lengths[0]
+                                               + "; sequences must already be aligned");
+            }
+            if (k == lengths.length) {
+                lengths = java.util.Arrays.copyOf(lengths, lengths.length * 2);
+            }
+            lengths[k] = residues;
+        }
+        else if (residues != lengths[k]) {
+            throw new FastaFormatException(file.toString(), position, "file changed while being read");
+        }
+        else {
+            species[k] = new Species(name, encoding, residues, packed);
+        }
+    }
+
+    //  Consumes the rest of a header line and returns the species name:
+    //  the last non-empty '|'-separated field, including the '>' if the
+    //  header has no '|'. The name is only decoded when wanted.
+    private String readHeader(boolean wanted) throws IOException {
+        int length = 1;
+        header[0] = '>';
+        while (position < size) {
+            int b = next();
+            if (b == '\n') {
+                break;
+            }
+            if (length == header.length) {
+                header = java.util.Arrays.copyOf(header, length * 2);
+            }
+            header[length++] = (byte) b;
+        }
+        if (!wanted) {
+            return null;
+        }
+
+        int end = length;
+        while (end > 0 && (header[end - 1] == '\r')) {
+            end--;
+        }
+        while (end > 0 && header[end - 1] == '|') {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && header[start - 1] != '|') {
+            start--;
+        }
+        return new String(header, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private int next() throws IOException {
+        if (window == null || position - windowStart >= window.limit()) {
+            windowStart = position;
+            long length = Math.min(WINDOW_BYTES, size - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        }
+        int b = window.get((int) (position - windowStart)) & 0xff;
+        position++;
+        return b;
+    }
+}
@@ -0,0 +1,184 @@
+package phylotree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/*
+ * Formats doubles exactly like new DecimalFormat("0.000...") with a fixed
+ * number of fraction digits (HALF_EVEN rounding, default-locale symbols,
+ * no grouping) without allocating for ordinary values. Values within a
+ * few ulps of a rounding tie, or too large to scale exactly into a long,
+ * are handed to an equivalent DecimalFormat.
+ *
+ * Instances keep a scratch buffer and are not thread-safe.
+ */
+
+public class FixedDecimalFormat {
+    private static final double EXACT_LIMIT = 9.007199254740992E15;    // 2^53
+
+    private final int digits;
+    private final double scale;
+    private final long longScale;
+    private final char zero, separator;
+    private final String minus, nan, infinity;      // minus is the negative prefix
+    private final DecimalFormat fallback;
+    private final char[] scratch = new char[64];
+
+    private byte[] separatorBytes, minusBytes, nanBytes, infinityBytes;
+    private Charset charset;
+    private boolean asciiCompatible;      // Digits below 128 encode as one byte each
+
+    //  - digits is the number of fraction digits, as in "0." followed by
+    //    digits zeros
+    public FixedDecimalFormat(int digits) {
+        if (digits < 1 || digits > 15) {
+            throw new IllegalArgumentException("Unsupported number of digits: " + digits);
+        }
+        this.digits = digits;
+        long s = 1;
+        for (int i = 0; i < digits; i++) {
+            s *= 10;
+        }
+        this.longScale = s;
+        this.scale = (double) s;
+
+        StringBuilder pattern = new StringBuilder("0.");
+        for (int i = 0; i < digits; i++) {
+            pattern.append('0');
+        }
+        this.fallback = new DecimalFormat(pattern.toString());
+
+        DecimalFormatSymbols symbols = fallback.getDecimalFormatSymbols();
+        this.zero = symbols.getZeroDigit();
+        this.separator = symbols.getDecimalSeparator();
+        this.minus = fallback.getNegativePrefix();
+        this.nan = symbols.getNaN();
+        this.infinity = symbols.getInfinity();
+    }
+
+    public void format(double x, StringBuilder out) {
+        int length = formatToScratch(x);
+        if (length < 0) {
+            out.append(special(x));
+        }
+        else {
+            out.append(scratch, 0, length);
+        }
+    }
+
+    //  Encodes the formatted value into out with charset, which must be
+    //  the same on every call. Only charsets that encode ASCII as ASCII,
+    //  such as UTF-8, avoid allocating.
+    public void format(double x, ByteBuffer out, Charset charset) {
+        if (this.charset != charset) {
+            this.charset = charset;
+            this.asciiCompatible = java.util.Arrays.equals("0123456789".getBytes(charset),
+                    "0123456789".getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+            this.separatorBytes = String.valueOf(separator).getBytes(charset);
+            this.minusBytes = minus.getBytes(charset);
+            this.nanBytes = nan.getBytes(charset);
+            this.infinityBytes = infinity.getBytes(charset);
+        }
+
+        int length = formatToScratch(x);
+        if (length >= 0 && !asciiCompatible) {
+            out.put(new String(scratch, 0, length).getBytes(charset));
+            return;
+        }
+        if (length < 0) {
+            if (Double.isNaN(x)) {
+                out.put(nanBytes);
+            }
+            else if (Double.isInfinite(x)) {
+                if (x < 0) {
+                    out.put(minusBytes);
+                }
+                out.put(infinityBytes);
+            }
+            else {
+                out.put(fallback.format(x).getBytes(charset));
+            }
+            return;
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = scratch[i];
+            if (c == separator) {
+                out.put(separatorBytes);
+            }
+            else if (c < 128) {
+                out.put((byte) c);
+            }
+            else {
+                out.put(String.valueOf(c).getBytes(charset));
+            }
+        }
+    }
+
+    public String format(double x) {
+        StringBuilder out = new StringBuilder();
+        format(x, out);
+        return out.toString();
+    }
+
+    //  Writes x into scratch and returns its length, or -1 if x has to be
+    //  formatted by special(x)
+    private int formatToScratch(double x) {
+        if (Double.isNaN(x) || Double.isInfinite(x)) {
+            return -1;
+        }
+        boolean negative = Double.doubleToRawLongBits(x) < 0;
+        double a = Math.abs(x);
+        double t = a * scale;
+        if (t >= EXACT_LIMIT) {
+            return -1;
+        }
+
+        long q = (long) t;
+        double fraction = t - q;
+        if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(t)) {
+            // Too close to a tie to trust the scaled double; DecimalFormat
+            // decides ties from the shortest decimal representation
+            return -1;
+        }
+        if (fraction > 0.5) {
+            q++;
+        }
+
+        // Fill from the end: fraction digits, separator, integer digits
+        int end = scratch.length;
+        int pos = end;
+        long integer = q / longScale;
+        long rest = q % longScale;
+        for (int i = 0; i < digits; i++) {
+            scratch[--pos] = (char) (zero + (int) (rest % 10));
+            rest /= 10;
+        }
+        scratch[--pos] = separator;
+        do {
+            scratch[--pos] = (char) (zero + (int) (integer % 10));
+            integer /= 10;
+        } while (integer > 0);
+        if (negative) {
+            for (int i = minus.length() - 1; i >= 0; i--) {
+                scratch[--pos] = minus.charAt(i);
+            }
+        }
+
+        int length = end - pos;
+        System.arraycopy(scratch, pos, scratch, 0, length);
+        return length;
+    }
+
+    private String special(double x) {
+        if (Double.isNaN(x)) {
+            return nan;
+        }
+        if (Double.isInfinite(x)) {
+            return x < 0 ? minus + infinity : infinity;
+        }
+        return fallback.format(x);
+    }
+}
@@ -0,0 +1,128 @@
+package phylotree;
+
+/*
+ * Bit-parallel mismatch counting over packed sequences (see
+ * SequenceEncoding). Each 64-bit word holds 32, 16 or 8 residue lanes;
+ * the words are XORed and every non-zero lane is folded down onto its
+ * lowest bit so that a single popcount counts the differing residues
+ * of the whole word.
+ */
+
+public class HammingKernel {
+    private static final long LOW_BIT_OF_2 = 0x5555555555555555L;
+    private static final long LOW_BIT_OF_4 = 0x1111111111111111L;
+    private static final long LOW_BIT_OF_8 = 0x0101010101010101L;
+
+    private HammingKernel() {
+    }
+
+    //  - x is the XOR of two packed words with bitsPerResidue-wide lanes
+    //  - Returns a word with the lowest bit of every non-zero lane set
+    public static long differingLanes(long x, int bitsPerResidue) {
+        switch (bitsPerResidue) {
+            case 2:
+                return (x | (x >>> 1)) & LOW_BIT_OF_2;
+            case 4:
+                x |= x >>> 2;
+                return (x | (x >>> 1)) & LOW_BIT_OF_4;
+            case 8:
+                x |= x >>> 4;
+                x |= x >>> 2;
+                return (x | (x >>> 1)) & LOW_BIT_OF_8;
+            default:
+                throw new IllegalArgumentException("Unsupported lane width: " + bitsPerResidue);
+        }
+    }
+
+    //  - a and b hold the same number of residues packed with the same lane width
+    //  - Returns the number of lanes in which they differ
+    public static int countDifferences(long[] a, long[] b, int bitsPerResidue) {
+        switch (bitsPerResidue) {
+            case 2:
+                return count2(a, b);
+            case 4:
+                return count4(a, b);
+            case 8:
+                return count8(a, b);
+            default:
+                throw new IllegalArgumentException("Unsupported lane width: " + bitsPerResidue);
+        }
+    }
+
+    // The loops below are specialised per lane width and unrolled four
+    // words at a time with independent accumulators, which lets the JIT
+    // keep several popcounts in flight.
+
+    private static int count2(long[] a, long[] b) {
+        int n = a.length;
+        int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            long x0 = a[i] ^ b[i];
+            long x1 = a[i + 1] ^ b[i + 1];
+            long x2 = a[i + 2] ^ b[i + 2];
+            long x3 = a[i + 3] ^ b[i + 3];
+            c0 += Long.bitCount((x0 | (x0 >>> 1)) & LOW_BIT_OF_2);
+            c1 += Long.bitCount((x1 | (x1 >>> 1)) & LOW_BIT_OF_2);
+            c2 += Long.bitCount((x2 | (x2 >>> 1)) & LOW_BIT_OF_2);
+            c3 += Long.bitCount((x3 | (x3 >>> 1)) & LOW_BIT_OF_2);
+        }
+        for (; i < n; i++) {
+            long x = a[i] ^ b[i];
+            c0 += Long.bitCount((x | (x >>> 1)) & LOW_BIT_OF_2);
+        }
+        return c0 + c1 + c2 + c3;
+    }
+
+    private static int count4(long[] a, long[] b) {
+        int n = a.length;
+        int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            long x0 = a[i] ^ b[i];
+            long x1 = a[i + 1] ^ b[i + 1];
+            long x2 = a[i + 2] ^ b[i + 2];
+            long x3 = a[i + 3] ^ b[i + 3];
+            x0 |= x0 >>> 2;
+            x1 |= x1 >>> 2;
+            x2 |= x2 >>> 2;
+            x3 |= x3 >>> 2;
+            c0 += Long.bitCount((x0 | (x0 >>> 1)) & LOW_BIT_OF_4);
+            c1 += Long.bitCount((x1 | (x1 >>> 1)) & LOW_BIT_OF_4);
+            c2 += Long.bitCount((x2 | (x2 >>> 1)) & LOW_BIT_OF_4);
+            c3 += Long.bitCount((x3 | (x3 >>> 1)) & LOW_BIT_OF_4);
+        }
+        for (; i < n; i++) {
+            c0 += Long.bitCount(differingLanes(a[i] ^ b[i], 4));
+        }
+        return c0 + c1 + c2 + c3;
+    }
+
+    private static int count8(long[] a, long[] b) {
+        int n = a.length;
+        int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            long x0 = a[i] ^ b[i];
+            long x1 = a[i + 1] ^ b[i + 1];
+            long x2 = a[i + 2] ^ b[i + 2];
+            long x3 = a[i + 3] ^ b[i + 3];
+            x0 |= x0 >>> 4;
+            x1 |= x1 >>> 4;
+            x2 |= x2 >>> 4;
+            x3 |= x3 >>> 4;
+            x0 |= x0 >>> 2;
+            x1 |= x1 >>> 2;
+            x2 |= x2 >>> 2;
+            x3 |= x3 >>> 2;
+            c0 += Long.bitCount((x0 | (x0 >>> 1)) & LOW_BIT_OF_8);
+            c1 += Long.bitCount((x1 | (x1 >>> 1)) & LOW_BIT_OF_8);
+            c2 += Long.bitCount((x2 | (x2 >>> 1)) & LOW_BIT_OF_8);
+            c3 += Long.bitCount((x3 | (x3 >>> 1)) & LOW_BIT_OF_8);
+        }
+        for (; i < n; i++) {
+            c0 += Long.bitCount(differingLanes(a[i] ^ b[i], 8));
+        }
+        return c0 + c1 + c2 + c3;
+    }
+}
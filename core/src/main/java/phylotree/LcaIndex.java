@@ -0,0 +1,209 @@
+package phylotree;
+
+import java.util.IdentityHashMap;
+
+/*
+ * Constant-time least common ancestor and evolutionary distance queries
+ * over a finished tree.
+ *
+ * The nodes are numbered in pre-order and the tree is walked once to
+ * record its Euler tour (every node each time the walk passes through
+ * it) together with each node's level and weighted depth. The LCA of two
+ * nodes is the shallowest node of the tour between their first visits,
+ * found with a sparse table of range minima in O(1). The evolutionary
+ * distance is then depth(a) + depth(b) - 2 * depth(lca).
+ *
+ * Building takes O(n log n) time and space. The index describes the tree
+ * at the time it was built and must be rebuilt when the tree changes.
+ */
+
+public class LcaIndex {
+    private final PhyloTreeNode[] nodes;                   // By id, in pre-order
+    private final IdentityHashMap<PhyloTreeNode,Integer> ids;
+    private final double[] weightedDepth;                  // By id
+    private final int[] first;                             // By id: first position in the tour
+
+    private final int[] tour;                              // Node ids in Euler tour order
+    private final int[] level;                             // Level of every tour entry
+    private final int[][] sparse;                          // sparse[k][i]: tour position of the
+                                                           //   shallowest entry in [i, i + 2^k)
+
+    public LcaIndex(PhyloTreeNode root) {
+        int count = countNodes(root);
+        this.nodes = new PhyloTreeNode[count];
+        this.ids = new IdentityHashMap<PhyloTreeNode,Integer>(2 * count);
+        this.weightedDepth = new double[count];
+        this.first = new int[count];
+        this.tour = new int[Math.max(1, 2 * count - 1)];
+        this.level = new int[tour.length];
+
+        walk(root);
+
+        int levels = 32 - Integer.numberOfLeadingZeros(tour.length);
+        this.sparse = new int[levels][];
+        sparse[0] = new int[tour.length];
+        for (int i = 0; i < tour.length; i++) {
+            sparse[0][i] = i;
+        }
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] previous = sparse[k - 1];
+            int[] row = new int[tour.length - (1 << k) + 1];
+            for (int i = 0; i < row.length; i++) {
+                int a = previous[i];
+                int b = previous[i + half];
+                row[i] = level[a] <= level[b] ? a : b;
+            }
+            sparse[k] = row;
+        }
+    }
+
+    //  Restores an index from the arrays of an earlier one (see
+    //  TreeSnapshot); nodes[id] must be the node that had that id
+    LcaIndex(PhyloTreeNode[] nodes, double[] weightedDepth, int[] first, int[] tour, int[] level, int[][] sparse) {
+        this.nodes = nodes;
+        this.ids = new IdentityHashMap<PhyloTreeNode,Integer>(2 * nodes.length);
+        for (int id = 0; id < nodes.length; id++) {
+            ids.put(nodes[id], id);
+        }
+        this.weightedDepth = weightedDepth;
+        this.first = first;
+        this.tour = tour;
+        this.level = level;
+        this.sparse = sparse;
+    }
+
+    PhyloTreeNode[] nodes() {
+        return nodes;
+    }
+
+    double[] weightedDepths() {
+        return weightedDepth;
+    }
+
+    int[] first() {
+        return first;
+    }
+
+    int[] tour() {
+        return tour;
+    }
+
+    int[] level() {
+        return level;
+    }
+
+    int[][] sparse() {
+        return sparse;
+    }
+
+    //  Returns the least common ancestor of node1 and node2, or null if
+    //  either is not part of the indexed tree
+    public PhyloTreeNode lca(PhyloTreeNode node1, PhyloTreeNode node2) {
+        Integer a = ids.get(node1);
+        Integer b = ids.get(node2);
+        if (a == null || b == null) {
+            return null;
+        }
+        return nodes[lca(a, b)];
+    }
+
+    //  Returns the sum of the branch lengths on the path between node1 and
+    //  node2, or infinity if either is not part of the indexed tree
+    public double distance(PhyloTreeNode node1, PhyloTreeNode node2) {
+        Integer a = ids.get(node1);
+        Integer b = ids.get(node2);
+        if (a == null || b == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (a.intValue() == b.intValue()) {
+            return 0.0;
+        }
+        return weightedDepth[a] + weightedDepth[b] - 2 * weightedDepth[lca(a, b)];
+    }
+
+    //  Sum of the branch lengths from the root down to node
+    public double weightedDepth(PhyloTreeNode node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : weightedDepth[id];
+    }
+
+    private int lca(int a, int b) {
+        int l = first[a];
+        int r = first[b];
+        if (l > r) {
+            int t = l;
+            l = r;
+            r = t;
+        }
+        int k = 31 - Integer.numberOfLeadingZeros(r - l + 1);
+        int x = sparse[k][l];
+        int y = sparse[k][r - (1 << k) + 1];
+        return tour[level[x] <= level[y] ? x : y];
+    }
+
+    //  Numbers the nodes in pre-order and records the Euler tour without
+    //  recursion, so that deep trees cannot overflow the stack
+    private void walk(PhyloTreeNode root) {
+        int[] stackId = new int[nodes.length];
+        int[] stackState = new int[nodes.length];   // 0: new, 1: left done, 2: both done
+        int top = 0;
+        int nextId = 0;
+        int position = 0;
+
+        nodes[nextId] = root;
+        ids.put(root, nextId);
+        stackId[top++] = nextId++;
+
+        while (top > 0) {
+            int id = stackId[top - 1];
+            PhyloTreeNode node = nodes[id];
+            tour[position] = id;
+            level[position] = top - 1;
+            if (stackState[top - 1] == 0) {
+                first[id] = position;
+            }
+            position++;
+
+            PhyloTreeNode child = null;
+            if (stackState[top - 1] == 0) {
+                child = node.getLeftChild() != null ? node.getLeftChild() : node.getRightChild();
+                stackState[top - 1] = node.getLeftChild() != null ? 1 : 2;
+            }
+            else if (stackState[top - 1] == 1) {
+                child = node.getRightChild();
+                stackState[top - 1] = 2;
+            }
+
+            if (child == null) {
+                top--;
+                // The parent is recorded again when the walk returns to it
+                continue;
+            }
+
+            nodes[nextId] = child;
+            ids.put(child, nextId);
+            weightedDepth[nextId] = weightedDepth[id] + node.getDistanceToChild();
+            stackId[top] = nextId++;
+            stackState[top] = 0;
+            top++;
+        }
+    }
+
+    private static int countNodes(PhyloTreeNode root) {
+        int count = 0;
+        java.util.ArrayDeque<PhyloTreeNode> pending = new java.util.ArrayDeque<PhyloTreeNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            PhyloTreeNode node = pending.pop();
+            count++;
+            if (node.getLeftChild() != null) {
+                pending.push(node.getLeftChild());
+            }
+            if (node.getRightChild() != null) {
+                pending.push(node.getRightChild());
+            }
+        }
+        return count;
+    }
+}
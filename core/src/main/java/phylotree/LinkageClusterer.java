@@ -0,0 +1,100 @@
+package phylotree;
+
+/*
+ * Agglomerative clustering over a DistanceMatrix: repeatedly joins the
+ * closest pair of clusters and replaces their distances to every other
+ * cluster according to the linkage rule.
+ *
+ * Two searches for the closest pair are available and they choose the
+ * same merges in the same order:
+ *
+ *   FULL_SCAN    scans every remaining pair on every merge, O(n^3) overall
+ *   ROW_MINIMA   caches the closest later cluster of every row and only
+ *                rescans rows whose cached minimum was invalidated by the
+ *                last merge, O(n^2) overall for typical inputs
+ */
+
+public class LinkageClusterer implements ClusteringStrategy {
+    public enum Linkage {
+        UPGMA,       // Average weighted by cluster size
+        WPGMA,       // Plain average of the two merged clusters
+        SINGLE,      // Minimum
+        COMPLETE     // Maximum
+    }
+
+    public enum Search {
+        FULL_SCAN,
+        ROW_MINIMA
+    }
+
+    private final Linkage linkage;
+    private final Search search;
+
+    public LinkageClusterer(Linkage linkage) {
+        this(linkage, Search.ROW_MINIMA);
+    }
+
+    public LinkageClusterer(Linkage linkage, Search search) {
+        this.linkage = linkage;
+        this.search = search;
+    }
+
+    public Linkage getLinkage() {
+        return this.linkage;
+    }
+
+    public Search getSearch() {
+        return this.search;
+    }
+
+    public void cluster(DistanceMatrix distances, int[] sizes, MergeListener listener) {
+        RowMinima rows = search == Search.ROW_MINIMA ? new RowMinima(distances) : null;
+
+        while (distances.activeCount() > 1) {
+            DistanceMatrix.Pair min = rows == null ? distances.minPair() : rows.minPair(distances);
+            int i = min.i();
+            int j = min.j();
+
+            listener.merged(i, j, min.distance());
+            join(distances, sizes, i, j);
+
+            if (rows != null) {
+                rows.merged(distances, i, j);
+            }
+        }
+    }
+
+    //  Folds cluster j into cluster i
+    private void join(DistanceMatrix distances, int[] sizes, int i, int j) {
+        double total = (double) (sizes[i] + sizes[j]);
+        for (int k = 0; k < distances.activeCount(); k++) {
+            int r = distances.activeId(k);
+            if (r != i && r != j) {
+                double di = distances.get(r, i);
+                double dj = distances.get(r, j);
+                double distance;
+                switch (linkage) {
+                    case UPGMA:
+                        distance = (double) sizes[i] / total * di +
+                                   (double) sizes[j] / total * dj;
+                        break;
+                    case WPGMA:
+                        distance = (di + dj) / 2.0;
+                        break;
+                    case SINGLE:
+                        distance = Math.min(di, dj);
+                        break;
+                    default:
+                        distance = Math.max(di, dj);
+                }
+                distances.set(r, i, distance);
+            }
+        }
+        distances.deactivate(j);
+        sizes[i] += sizes[j];
+    }
+
+    public String toString() {
+        return linkage.toString();
+    }
+}
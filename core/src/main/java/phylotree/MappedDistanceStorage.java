@@ -0,0 +1,116 @@
+package phylotree;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * Condensed distances kept in a memory-mapped temporary file instead of
+ * the heap, for alignments whose matrix does not fit in memory.
+ *
+ * The upper triangle is cut into square tiles of TILE x TILE pairs, one
+ * or two pages each, stored row by row within a tile and tile by tile
+ * along each band of TILE rows. Clustering reads and rewrites a whole
+ * row and column of the matrix on every merge: the part of row i right
+ * of the diagonal lies in band i / TILE, read front to back, and the
+ * part of column i above it touches one tile per earlier band. That is
+ * n / TILE page touches per column rather than one per earlier row, as
+ * it would be in DistanceMatrixBuilder.index order. Diagonal tiles are
+ * stored whole; their slots below the diagonal are unused.
+ *
+ * The file is mapped in windows of at most 1 GB each, since a single
+ * mapping cannot exceed 2 GB, and tiles never straddle two windows. With
+ * float32 storage the values take half the space and are rounded to
+ * float precision.
+ *
+ * The file is deleted as soon as it is mapped; the operating system
+ * reclaims it once the mappings are garbage collected.
+ */
+
+public class MappedDistanceStorage implements DistanceStorage {
+    private static final int WINDOW_SHIFT = 30;
+    private static final int TILE_SHIFT = 5;
+    private static final int TILE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE - 1;
+
+    private final int n;
+    private final int blocks;           // Bands of TILE rows
+    private final boolean float32;
+    private final int elementShift;     // log2 of bytes per value
+    private final int indexShift;       // log2 of values per window
+    private final long indexMask;
+    private final MappedByteBuffer[] windows;
+
+    //  - n >= 0 species; the matrix is stored in a new file in directory
+    public MappedDistanceStorage(Path directory, int n, boolean float32) throws IOException {
+        this.n = n;
+        this.blocks = (n + TILE - 1) >>> TILE_SHIFT;
+        this.float32 = float32;
+        this.elementShift = float32 ? 2 : 3;
+        this.indexShift = WINDOW_SHIFT - elementShift;
+        this.indexMask = (1L << indexShift) - 1;
+
+        Path file = Files.createTempFile(directory, "distances", ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long slots = (long) blocks * (blocks + 1) / 2 * TILE * TILE;
+            long bytes = slots << elementShift;
+            raf.setLength(bytes);
+            FileChannel channel = raf.getChannel();
+
+            int count = (int) ((bytes + (1L << WINDOW_SHIFT) - 1) >>> WINDOW_SHIFT);
+            this.windows = new MappedByteBuffer[count];
+            for (int w = 0; w < count; w++) {
+                long start = (long) w << WINDOW_SHIFT;
+                long length = Math.min(1L << WINDOW_SHIFT, bytes - start);
+                windows[w] = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+                windows[w].order(ByteOrder.nativeOrder());
+            }
+        }
+        finally {
+            try {
+                Files.delete(file);
+            }
+            catch (IOException e) {
+                // Platforms that cannot delete mapped files
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    public long size() {
+        return DistanceMatrixBuilder.condensedSize(n);
+    }
+
+    public boolean isFloat32() {
+        return float32;
+    }
+
+    //  - species is the count the storage was created for
+    public long index(int i, int j, int species) {
+        int bi = i >>> TILE_SHIFT;
+        int bj = j >>> TILE_SHIFT;
+        long tile = (long) bi * blocks - (long) bi * (bi - 1) / 2 + (bj - bi);
+        return (tile << (2 * TILE_SHIFT)) + ((i & TILE_MASK) << TILE_SHIFT) + (j & TILE_MASK);
+    }
+
+    public double get(long index) {
+        MappedByteBuffer window = windows[(int) (index >>> indexShift)];
+        int offset = (int) (index & indexMask) << elementShift;
+        return float32 ? window.getFloat(offset) : window.getDouble(offset);
+    }
+
+    public void set(long index, double distance) {
+        MappedByteBuffer window = windows[(int) (index >>> indexShift)];
+        int offset = (int) (index & indexMask) << elementShift;
+        if (float32) {
+            window.putFloat(offset, (float) distance);
+        }
+        else {
+            window.putDouble(offset, distance);
+        }
+    }
+}
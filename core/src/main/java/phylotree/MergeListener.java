@@ -0,0 +1,11 @@
+package phylotree;
+
+/*
+ * Receives the merges chosen by a clustering engine, in order.
+ */
+
+public interface MergeListener {
+    //  - Clusters i and j (i < j) are joined at the given distance
+    //  - The joined cluster keeps id i from now on and j is retired
+    void merged(int i, int j, double distance);
+}
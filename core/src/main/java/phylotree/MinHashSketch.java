@@ -0,0 +1,111 @@
+package phylotree;
+
+/*
+ * One-permutation MinHash sketches of aligned sequences, for estimating
+ * p-distances without comparing whole sequences.
+ *
+ * The k-mers of a sequence are its windows of K consecutive columns,
+ * tagged with the column they start at and including gaps, so two
+ * sequences share a k-mer exactly where they agree on K columns in a row.
+ * Each tagged k-mer is hashed to one of SIZE bins, which keeps the
+ * smallest value it sees; empty bins borrow from the next non-empty one.
+ * The fraction of bins two sketches agree on estimates the Jaccard
+ * similarity J of their k-mer sets. Both sets hold N windows, of which
+ * about N (1 - p)^K are shared, so J = m / (2N - m) gives
+ *
+ *   p = 1 - (2J / (1 + J))^(1 / K)
+ */
+
+public class MinHashSketch {
+    public static final int K = 4;
+    public static final int SIZE = 128;
+    private static final int BIN_SHIFT = 64 - 7;    // log2(SIZE) top bits pick the bin
+
+    private static final long SEED = 0x5DEECE66DL;
+    private static final int ROTATION = 0x9E3779B9;
+
+    private MinHashSketch() {
+    }
+
+    //  Returns the SIZE bin values of species
+    public static int[] of(Species species) {
+        int[] bins = new int[SIZE];
+        boolean[] filled = new boolean[SIZE];
+        long[] words = species.words();
+        SequenceEncoding encoding = species.getEncoding();
+        int bits = encoding.bitsPerResidue();
+        int perWord = encoding.residuesPerWord();
+        long mask = encoding.laneMask();
+        long windowMask = bits * K >= 64 ? -1L : (1L << (bits * K)) - 1;
+
+        long window = 0;
+        for (int c = 0; c < species.getLength(); c++) {
+            long code = (words[c / perWord] >>> ((c % perWord) * bits)) & mask;
+            window = ((window << bits) | code) & windowMask;
+            if (c + 1 < K) {
+                continue;
+            }
+            long h = mix(((long) (c + 1 - K) << 32) ^ window ^ SEED);
+            int bin = (int) (h >>> BIN_SHIFT);
+            int value = (int) h;
+            if (!filled[bin] || value < bins[bin]) {
+                bins[bin] = value;
+                filled[bin] = true;
+            }
+        }
+        densify(bins, filled);
+        return bins;
+    }
+
+    // Fills each empty bin from the nearest filled bin after it, rotated
+    // by the distance so that different empty bins stay distinguishable
+    private static void densify(int[] bins, boolean[] filled) {
+        int source = -1;
+        for (int b = 0; b < SIZE; b++) {
+            if (filled[b]) {
+                source = b;
+                break;
+            }
+        }
+        if (source < 0) {
+            // Shorter than one window: every such sequence looks alike
+            return;
+        }
+        for (int b = SIZE - 1; b >= 0; b--) {
+            if (filled[b]) {
+                source = b;
+            }
+            else {
+                int offset = Math.floorMod(source - b, SIZE);
+                bins[b] = bins[source] + offset * ROTATION;
+            }
+        }
+    }
+
+    //  Estimated Jaccard similarity of the k-mer sets behind a and b
+    public static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int k = 0; k < SIZE; k++) {
+            if (a[k] == b[k]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIZE;
+    }
+
+    //  Estimated p-distance between the sequences sketched as a and b
+    public static double distance(int[] a, int[] b) {
+        double j = similarity(a, b);
+        if (j == 0.0) {
+            return 1.0;
+        }
+        return 1.0 - Math.pow(2.0 * j / (1.0 + j), 1.0 / K);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
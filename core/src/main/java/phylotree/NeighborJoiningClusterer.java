@@ -0,0 +1,135 @@
+package phylotree;
+
+/*
+ * Neighbor-Joining (Saitou & Nei) over a DistanceMatrix. On every merge
+ * the pair minimising
+ *
+ *     Q(i, j) = (r - 2) d(i, j) - R(i) - R(j)
+ *
+ * is joined, where r is the number of remaining clusters and R(i) the
+ * sum of row i. As in RapidNJ, a row is only scanned if its lower bound
+ *
+ *     (r - 2) min_j d(i, j) - R(i) - max_k R(k)
+ *
+ * can still beat the best Q found so far. Row minima are kept up to date
+ * incrementally (see RowMinima), so the extra memory is O(n) on top of
+ * the condensed matrix.
+ *
+ * A PhyloTreeNode carries one branch length for both children, so the
+ * merge distance reported is d(i, j): its half is the mean of the two
+ * Neighbor-Joining branch lengths.
+ */
+
+public class NeighborJoiningClusterer implements ClusteringStrategy {
+
+    public void cluster(DistanceMatrix distances, int[] sizes, MergeListener listener) {
+        int n = distances.size();
+        double[] rowSums = new double[n];
+        for (int p = 0; p < distances.activeCount(); p++) {
+            int i = distances.activeId(p);
+            for (int q = p + 1; q < distances.activeCount(); q++) {
+                int j = distances.activeId(q);
+                double d = distances.get(i, j);
+                rowSums[i] += d;
+                rowSums[j] += d;
+            }
+        }
+
+        RowMinima rows = new RowMinima(distances);
+        double[] bound = new double[n];
+
+        while (distances.activeCount() > 2) {
+            int r = distances.activeCount();
+            double maxSum = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < r; k++) {
+                maxSum = Math.max(maxSum, rowSums[distances.activeId(k)]);
+            }
+
+            // Seed the search with the row of smallest bound, then visit
+            // the remaining rows in id order so ties resolve to the
+            // smallest (i, j) whatever the seed was
+            int seed = -1;
+            for (int k = 0; k < r; k++) {
+                int i = distances.activeId(k);
+                if (rows.arg(i) >= 0) {
+                    bound[i] = (r - 2) * rows.min(distances, i) - rowSums[i] - maxSum;
+                    if (seed < 0 || bound[i] < bound[distances.activeId(seed)]) {
+                        seed = k;
+                    }
+                }
+            }
+
+            Best best = new Best();
+            if (seed >= 0) {
+                scanRow(distances, rowSums, seed, best);
+                for (int k = 0; k < r; k++) {
+                    int i = distances.activeId(k);
+                    if (k != seed && rows.arg(i) >= 0
+                            && bound[i] <= best.q + 1e-9 * (Math.abs(best.q) + 1.0)) {
+                        scanRow(distances, rowSums, k, best);
+                    }
+                }
+            }
+            if (best.i < 0) {
+                // Every remaining distance is infinite or NaN
+                best.i = distances.activeId(0);
+                best.j = distances.activeId(1);
+            }
+
+            join(distances, sizes, rowSums, best.i, best.j, listener);
+            rows.merged(distances, best.i, best.j);
+        }
+
+        if (distances.activeCount() == 2) {
+            join(distances, sizes, rowSums, distances.activeId(0), distances.activeId(1), listener);
+        }
+    }
+
+    //  Offers every pair (i, j), j > i, of the k-th active row to best
+    private static void scanRow(DistanceMatrix distances, double[] rowSums, int k, Best best) {
+        int r = distances.activeCount();
+        int i = distances.activeId(k);
+        for (int q = k + 1; q < r; q++) {
+            int j = distances.activeId(q);
+            double value = (r - 2) * distances.get(i, j) - rowSums[i] - rowSums[j];
+            if (value < best.q || (value == best.q && (i < best.i || (i == best.i && j < best.j)))) {
+                best.q = value;
+                best.i = i;
+                best.j = j;
+            }
+        }
+    }
+
+    //  Replaces clusters i and j by their new node u, kept under id i:
+    //  d(u, k) = (d(i, k) + d(j, k) - d(i, j)) / 2
+    private static void join(DistanceMatrix distances, int[] sizes, double[] rowSums,
+                             int i, int j, MergeListener listener) {
+        double dij = distances.get(i, j);
+        listener.merged(i, j, dij);
+
+        double sum = 0.0;
+        for (int k = 0; k < distances.activeCount(); k++) {
+            int r = distances.activeId(k);
+            if (r != i && r != j) {
+                double di = distances.get(r, i);
+                double dj = distances.get(r, j);
+                double du = (di + dj - dij) / 2.0;
+                rowSums[r] += du - di - dj;
+                sum += du;
+                distances.set(r, i, du);
+            }
+        }
+        rowSums[i] = sum;
+        distances.deactivate(j);
+        sizes[i] += sizes[j];
+    }
+
+    private static class Best {
+        double q = Double.POSITIVE_INFINITY;
+        int i = -1, j = -1;
+    }
+
+    public String toString() {
+        return "NJ";
+    }
+}
@@ -0,0 +1,49 @@
+package phylotree;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/*
+ * Flight Recorder event covering one phase of processing an alignment
+ * (see PhaseMetrics). The event's own duration is the phase's wall time.
+ * Enable with e.g. -XX:StartFlightRecording:settings=profile or
+ * jcmd <pid> JFR.start; when no recording is running the events are
+ * never created.
+ */
+
+@Name("phylotree.Phase")
+@Label("PhyloTree Phase")
+@Category("PhyloTree")
+@Description("Parsing, distance computation, clustering or output of one alignment")
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("File")
+    String file;
+
+    @Label("Species")
+    int species;
+
+    @Label("CPU Time")
+    @Description("CPU time of every thread working on the phase")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Items")
+    @Description("Pairs for distances, merges for clustering, species otherwise")
+    long items;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+}
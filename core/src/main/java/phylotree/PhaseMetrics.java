@@ -0,0 +1,240 @@
+package phylotree;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import jdk.jfr.EventType;
+
+/*
+ * Wall time, CPU time and allocation of the phases of processing one
+ * alignment, for finding out where a slow run spends its time:
+ *
+ *   parse        loadSpeciesFile
+ *   distances    the all-pairs distance matrix (items: pairs)
+ *   clustering   the merge loop of buildTree (items: merges)
+ *   output       the .tree and distances files (bytes written)
+ *
+ * CPU time and allocation include the distance builder's worker threads.
+ * When the distances were computed over site patterns, the number of
+ * alignment columns and of patterns is recorded too.
+ * Each phase is also reported as a PhaseEvent to Flight Recorder when a
+ * recording is running. When neither a PhaseMetrics nor a recording is
+ * present, start() returns a recorder that does nothing.
+ */
+
+public class PhaseMetrics {
+    public enum Phase {
+        PARSE, DISTANCES, CLUSTERING, OUTPUT;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Checked before creating a PhaseEvent, so none are allocated unless
+    // a recording wants them
+    private static final EventType PHASE_EVENT = EventType.getEventType(PhaseEvent.class);
+
+    private static final Recorder DISABLED = new Recorder(null, null, null, false) {
+        @Override
+        void addWorkerUsage(long cpuNanos, long allocatedBytes) {
+        }
+
+        @Override
+        void end(int species, long items, long bytesWritten) {
+        }
+    };
+
+    private final String file;
+    private final long[] wallNanos = new long[Phase.values().length];
+    private final long[] cpuNanos = new long[Phase.values().length];
+    private final long[] allocatedBytes = new long[Phase.values().length];
+    private final long[] items = new long[Phase.values().length];
+    private int species;
+    private long bytesWritten;
+    private int sites, sitePatterns;
+
+    public PhaseMetrics(String file) {
+        this.file = file;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public synchronized int getSpecies() {
+        return species;
+    }
+
+    public synchronized long getWallNanos(Phase phase) {
+        return wallNanos[phase.ordinal()];
+    }
+
+    public synchronized long getCpuNanos(Phase phase) {
+        return cpuNanos[phase.ordinal()];
+    }
+
+    public synchronized long getAllocatedBytes(Phase phase) {
+        return allocatedBytes[phase.ordinal()];
+    }
+
+    public synchronized long getItems(Phase phase) {
+        return items[phase.ordinal()];
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public synchronized int getSites() {
+        return sites;
+    }
+
+    public synchronized int getSitePatterns() {
+        return sitePatterns;
+    }
+
+    synchronized void setSitePatterns(int sites, int sitePatterns) {
+        this.sites = sites;
+        this.sitePatterns = sitePatterns;
+    }
+
+    public synchronized double getMergesPerSecond() {
+        long nanos = wallNanos[Phase.CLUSTERING.ordinal()];
+        return nanos == 0 ? 0.0 : items[Phase.CLUSTERING.ordinal()] * 1e9 / nanos;
+    }
+
+    //  One JSON object on a single line
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"file\":\"");
+        for (int k = 0; k < file.length(); k++) {
+            char c = file.charAt(k);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                json.append(c);
+            }
+        }
+        json.append("\",\"species\":").append(species);
+        for (Phase phase : Phase.values()) {
+            int p = phase.ordinal();
+            json.append(",\"").append(phase.key()).append("\":{\"wallNanos\":").append(wallNanos[p])
+                .append(",\"cpuNanos\":").append(cpuNanos[p])
+                .append(",\"allocatedBytes\":").append(allocatedBytes[p])
+                .append(",\"items\":").append(items[p]).append('}');
+        }
+        if (sites > 0) {
+            json.append(",\"sites\":").append(sites).append(",\"sitePatterns\":").append(sitePatterns)
+                .append(",\"compressionRatio\":")
+                .append(String.format(Locale.ROOT, "%.2f", (double) sites / Math.max(1, sitePatterns)));
+        }
+        json.append(",\"mergesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getMergesPerSecond()));
+        json.append(",\"bytesWritten\":").append(bytesWritten).append('}');
+        return json.toString();
+    }
+
+    //  Whether a Flight Recorder recording is collecting PhaseEvents
+    public static boolean isRecording() {
+        return PHASE_EVENT.isEnabled();
+    }
+
+    //  - metrics may be null
+    //  - Starts measuring phase on the calling thread
+    static Recorder start(PhaseMetrics metrics, Phase phase) {
+        boolean recording = PHASE_EVENT.isEnabled();
+        if (metrics == null && !recording) {
+            return DISABLED;
+        }
+        return new Recorder(metrics, phase, recording ? new PhaseEvent() : null, true);
+    }
+
+    private synchronized void add(Phase phase, long wall, long cpu, long allocated, int species,
+                                  long items, long bytesWritten) {
+        int p = phase.ordinal();
+        this.wallNanos[p] += wall;
+        this.cpuNanos[p] += cpu;
+        this.allocatedBytes[p] += allocated;
+        this.items[p] += items;
+        this.species = Math.max(this.species, species);
+        this.bytesWritten += bytesWritten;
+    }
+
+    static class Recorder {
+        private final PhaseMetrics metrics;
+        private final Phase phase;
+        private final PhaseEvent event;     // Null unless a recording is running
+        private final boolean enabled;
+        private final long wallStart, cpuStart, allocatedStart;
+        private long workerCpu, workerAllocated;
+
+        private Recorder(PhaseMetrics metrics, Phase phase, PhaseEvent event, boolean enabled) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.event = event;
+            this.enabled = enabled;
+            if (!enabled) {
+                wallStart = cpuStart = allocatedStart = 0;
+                return;
+            }
+            if (event != null) {
+                event.begin();
+            }
+            wallStart = System.nanoTime();
+            cpuStart = THREADS.getCurrentThreadCpuTime();
+            allocatedStart = THREADS.getCurrentThreadAllocatedBytes();
+        }
+
+        //  Whether anyone is listening; callers can skip gathering
+        //  extra figures otherwise
+        boolean isEnabled() {
+            return enabled;
+        }
+
+        //  Adds work done for the phase by other threads
+        synchronized void addWorkerUsage(long cpuNanos, long allocatedBytes) {
+            workerCpu += cpuNanos;
+            workerAllocated += allocatedBytes;
+        }
+
+        //  - items counts the phase's units of work (see PhaseEvent)
+        synchronized void end(int species, long items, long bytesWritten) {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = THREADS.getCurrentThreadCpuTime() - cpuStart + workerCpu;
+            long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedStart + workerAllocated;
+            if (metrics != null) {
+                metrics.add(phase, wall, cpu, allocated, species, items, bytesWritten);
+            }
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.key();
+                event.file = metrics != null ? metrics.getFile() : null;
+                event.species = species;
+                event.cpuTime = cpu;
+                event.allocated = allocated;
+                event.items = items;
+                event.bytesWritten = bytesWritten;
+                event.commit();
+            }
+        }
+
+        // Usage of the current thread so far, for worker threads to report
+        static long currentCpu() {
+            return THREADS.getCurrentThreadCpuTime();
+        }
+
+        static long currentAllocated() {
+            return THREADS.getCurrentThreadAllocatedBytes();
+        }
+    }
+}
@@ -0,0 +1,860 @@
+package phylotree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Defines a phylogenetic tree, which is a strictly binary tree 
+ * that represents inferred hierarchical relationships between species
+ * 
+ * Iain Maryanow
+ * Holden Matheson
+ */
+
+public class PhyloTree {
+    private PhyloTreeNode overallRoot;    // The actual root of the overall tree
+    private int printingDepth;            // How many spaces to indent the deepest 
+                                          //    node when printing
+    
+    // Stores all the nodes by label, prevents having to traverse the tree
+    // looking for each node
+    private HashMap<String,PhyloTreeNode> hm = new HashMap<String,PhyloTreeNode>();
+
+    // Answers LCA and distance queries in O(1); null until first needed and
+    // whenever the tree has changed since it was built
+    private volatile LcaIndex lcaIndex;
+
+    // Height, weighted height, leaf count and leaf order of every node,
+    // recorded as the tree is built
+    private SubtreeAggregates aggregates;
+
+    // How the tree was built, reused by addSpecies, and how many species
+    // have been placed incrementally since
+    private BuildOptions options = new BuildOptions();
+    private int insertedSinceBuild;
+
+    // Bootstrap support of the internal nodes in percent, written into the
+    // Newick output; null until bootstrap() is run and after any change
+    private java.util.IdentityHashMap<PhyloTreeNode,Integer> supports;
+
+
+    // - A linked tree structure representing the inferred hierarchical
+    //   species relationship has been created, and overallRoot points to
+    //   the root of this tree
+    public PhyloTree(String speciesFile, int printingDepth) throws IOException {
+    	this(speciesFile, printingDepth, new BuildOptions());
+    }
+
+    public PhyloTree(String speciesFile, int printingDepth, ClusteringStrategy strategy) throws IOException {
+    	this(speciesFile, printingDepth, new BuildOptions().setStrategy(strategy));
+    }
+
+    public PhyloTree(String speciesFile, int printingDepth, BuildOptions options) throws IOException {
+    	this(loadSpeciesFile(speciesFile, options.getMetrics()), printingDepth, options);
+    }
+
+    // - species is a non-empty aligned set, e.g. from loadSpeciesFile
+    public PhyloTree(Species[] species, int printingDepth, BuildOptions options) {
+    	this.printingDepth = printingDepth;
+    	buildTree(species, options);
+    }
+
+    // - root is a linked tree whose internal nodes are labelled as
+    //   buildTree labels them; lcaIndex is an index of it or null
+    PhyloTree(PhyloTreeNode root, int printingDepth, LcaIndex lcaIndex) {
+    	this.printingDepth = printingDepth;
+    	this.overallRoot = root;
+    	this.lcaIndex = lcaIndex;
+    	this.aggregates = SubtreeAggregates.of(root);
+    	registerLabels(root);
+    }
+
+    //  Opens a tree saved with writeSnapshot, without reading the
+    //  alignment or computing any distances
+    public static PhyloTree openSnapshot(Path file) throws IOException {
+    	return TreeSnapshot.read(file);
+    }
+
+    //  Saves the built tree to file (see TreeSnapshot). withLcaIndex also
+    //  stores the LCA index so that reopened trees answer distance queries
+    //  without rebuilding it.
+    public void writeSnapshot(Path file, boolean withLcaIndex) throws IOException {
+    	TreeSnapshot.write(overallRoot, printingDepth, withLcaIndex ? lcaIndex() : null, file);
+    }
+
+    // Stores every node below root in hm by label
+    private void registerLabels(PhyloTreeNode root) {
+    	ArrayDeque<PhyloTreeNode> pending = new ArrayDeque<PhyloTreeNode>();
+    	pending.push(root);
+    	while (!pending.isEmpty()) {
+    		PhyloTreeNode node = pending.pop();
+    		hm.put(node.isLeaf() ? node.getSpecies().getName() : node.getLabel(), node);
+    		if (!node.isLeaf()) {
+    			pending.push(node.getLeftChild());
+    			pending.push(node.getRightChild());
+    		}
+    	}
+    }
+
+    public PhyloTreeNode getOverallRoot() {
+      return overallRoot;
+    }
+
+    public String toString() {
+      java.io.StringWriter out = new java.io.StringWriter();
+      try {
+         writeTree(out);
+      }
+      catch (IOException e) {
+         throw new java.io.UncheckedIOException(e);
+      }
+      return out.toString();
+    }
+
+   //  Streams the indented view returned by toString() into out
+   public void writeTree(Writer out) throws IOException {
+      new TreeWriter().writeIndented(overallRoot, this.printingDepth, this.getWeightedHeight(), out);
+   }
+
+   public String toTreeString() {
+      java.io.StringWriter out = new java.io.StringWriter();
+      try {
+         writeNewick(out);
+      }
+      catch (IOException e) {
+         throw new java.io.UncheckedIOException(e);
+      }
+      return out.toString();
+   }
+
+   //  Streams the Newick form returned by toTreeString() into out
+   public void writeNewick(Writer out) throws IOException {
+      new TreeWriter().writeNewick(overallRoot, supports, out);
+   }
+
+   //  - replicates >= 1
+   //  - Builds replicates trees from resampled alignment columns (see
+   //    Bootstrap) with the strategy, distance model and parallelism the
+   //    tree was built with, and labels every internal node below the root
+   //    with the percentage of replicates containing its clade.
+   //    toTreeString and writeNewick include these supports from now on.
+   public Bootstrap bootstrap(int replicates, long seed) {
+      Bootstrap bootstrap = Bootstrap.run(getAllSpecies(), options.getStrategy(), options.getDistanceModel(),
+                                          replicates, seed, options.getParallelism());
+      java.util.IdentityHashMap<PhyloTreeNode,Integer> percentages = new java.util.IdentityHashMap<PhyloTreeNode,Integer>();
+      for (PhyloTreeNode node : hm.values()) {
+         if (!node.isLeaf() && node != overallRoot) {
+            int start = aggregates.leafStart(node);
+            int count = bootstrap.count(start, start + aggregates.leafCount(node));
+            percentages.put(node, (int) Math.round(100.0 * count / replicates));
+         }
+      }
+      supports = percentages;
+      return bootstrap;
+   }
+
+    public int getHeight() {
+        return aggregates.height(overallRoot);
+    }
+
+    public double getWeightedHeight() {
+        return aggregates.weightedHeight(overallRoot);
+    }
+
+    public int countAllSpecies() {
+        return aggregates.leafCount(overallRoot);
+    }
+
+    //  Returns every species in the tree, left to right, as an
+    //  unmodifiable view that is shared between calls
+    public List<Species> getAllSpecies() {
+      return aggregates.leaves();
+    }
+
+    //  Returns the species below the node labelled label, left to right,
+    //  as an unmodifiable slice of getAllSpecies(); null if there is no
+    //  such node
+    public List<Species> getSubtreeSpecies(String label) {
+      PhyloTreeNode node = hm.get(label);
+      if (node == null) {
+         return null;
+      }
+      return getAllDescendantSpecies(node);
+    }
+
+    //  Whether the node labelled label is the node labelled cladeLabel or
+    //  lies below it; false if either label is not in the tree
+    public boolean isInClade(String label, String cladeLabel) {
+      PhyloTreeNode node = hm.get(label);
+      PhyloTreeNode clade = hm.get(cladeLabel);
+      return node != null && clade != null && aggregates.isWithin(node, clade);
+    }
+
+    //  - labels and cladeLabels have the same length
+    //  - Answers isInClade(labels[k], cladeLabels[k]) for every k in one
+    //    call. Consecutive queries on the same clade look it up only once.
+    public boolean[] isInClade(String[] labels, String[] cladeLabels) {
+      if (labels.length != cladeLabels.length) {
+         throw new IllegalArgumentException("Need one clade per label: " + labels.length + " labels, "
+                                            + cladeLabels.length + " clades");
+      }
+      boolean[] within = new boolean[labels.length];
+      String lastLabel = null;
+      PhyloTreeNode clade = null;
+      for (int k = 0; k < labels.length; k++) {
+         if (k == 0 || !cladeLabels[k].equals(lastLabel)) {
+            lastLabel = cladeLabels[k];
+            clade = hm.get(lastLabel);
+         }
+         PhyloTreeNode node = hm.get(labels[k]);
+         within[k] = node != null && clade != null && aggregates.isWithin(node, clade);
+      }
+      return within;
+    }
+
+    //  - Every species is aligned with the tree's and named differently
+    //    from every node of the tree and from each other
+    //  - Adds the species to the tree. Each one only has its distances to
+    //    the existing leaves computed and is placed next to the subtree it
+    //    would have joined under the build's linkage; the rest of the tree
+    //    keeps its shape. Once more than getMaxInsertionDrift() of the
+    //    species have been placed this way, the whole tree is rebuilt.
+    public void addSpecies(Species... species) {
+      java.util.HashSet<String> names = new java.util.HashSet<String>();
+      for (Species s : species) {
+         if (hm.containsKey(s.getName()) || !names.add(s.getName())) {
+            throw new IllegalArgumentException("Tree already has a node labelled " + s.getName());
+         }
+      }
+      if (species.length == 0) {
+         return;
+      }
+
+      int total = countAllSpecies() + species.length;
+      if (insertedSinceBuild + species.length > options.getMaxInsertionDrift() * total) {
+         List<Species> all = new ArrayList<Species>(getAllSpecies());
+         all.addAll(java.util.Arrays.asList(species));
+         hm.clear();
+         buildTree(all.toArray(new Species[0]), options);
+         return;
+      }
+
+      for (Species s : species) {
+         insert(s);
+      }
+      insertedSinceBuild += species.length;
+    }
+
+    //  - other has exactly the species of this tree, matched by name
+    //  - Returns the Robinson-Foulds distance between the two trees as
+    //    rooted trees: the number of clades, the species below an internal
+    //    node other than the root, that only one of them contains. At most
+    //    2 (n - 2) for n species.
+    public int robinsonFoulds(PhyloTree other) {
+      List<Species> leaves = getAllSpecies();
+      List<Species> otherLeaves = other.getAllSpecies();
+      if (leaves.size() != otherLeaves.size()) {
+         throw new IllegalArgumentException("Trees have " + leaves.size() + " and " + otherLeaves.size()
+                                            + " species");
+      }
+
+      // A clade of this tree is an interval of getAllSpecies()
+      java.util.HashSet<Long> clades = new java.util.HashSet<Long>(2 * leaves.size());
+      for (PhyloTreeNode node : hm.values()) {
+         if (!node.isLeaf() && node != overallRoot) {
+            clades.add((long) aggregates.leafStart(node) << 32 | aggregates.leafCount(node));
+         }
+      }
+
+      // Position in this tree of every species of other, in other's order
+      HashMap<String,Integer> position = new HashMap<String,Integer>(2 * leaves.size());
+      for (int k = 0; k < leaves.size(); k++) {
+         position.put(leaves.get(k).getName(), k);
+      }
+      int[] positions = new int[otherLeaves.size()];
+      for (int k = 0; k < positions.length; k++) {
+         Integer p = position.get(otherLeaves.get(k).getName());
+         if (p == null) {
+            throw new IllegalArgumentException("Species " + otherLeaves.get(k).getName() + " is not in this tree");
+         }
+         positions[k] = p;
+      }
+
+      // Children before parents, so each clade of other gets the lowest
+      // and highest positions below it from its children; it is a clade of
+      // this tree if those span exactly its species and form a clade here
+      List<PhyloTreeNode> internal = new ArrayList<PhyloTreeNode>();
+      for (PhyloTreeNode node : other.hm.values()) {
+         if (!node.isLeaf()) {
+            internal.add(node);
+         }
+      }
+      internal.sort((a, b) -> Integer.compare(other.aggregates.leafCount(a), other.aggregates.leafCount(b)));
+      java.util.IdentityHashMap<PhyloTreeNode,int[]> span = new java.util.IdentityHashMap<PhyloTreeNode,int[]>();
+      int shared = 0;
+      for (PhyloTreeNode node : internal) {
+         int[] left = spanOf(other, node.getLeftChild(), positions, span);
+         int[] right = spanOf(other, node.getRightChild(), positions, span);
+         int low = Math.min(left[0], right[0]);
+         int high = Math.max(left[1], right[1]);
+         span.put(node, new int[] { low, high });
+         int count = other.aggregates.leafCount(node);
+         if (node != other.overallRoot && high - low + 1 == count && clades.contains((long) low << 32 | count)) {
+            shared++;
+         }
+      }
+      int otherClades = Math.max(0, internal.size() - 1);
+      return clades.size() - shared + otherClades - shared;
+    }
+
+    // Lowest and highest position of the species below node, for a node
+    // whose span is known or a leaf
+    private static int[] spanOf(PhyloTree tree, PhyloTreeNode node, int[] positions,
+                                java.util.IdentityHashMap<PhyloTreeNode,int[]> span) {
+      if (node.isLeaf()) {
+         int p = positions[tree.aggregates.leafStart(node)];
+         return new int[] { p, p };
+      }
+      return span.get(node);
+    }
+
+    //  Returns the evolutionary distance between every pair of species,
+    //  indexed in getAllSpecies() order. Computed in one traversal: at each
+    //  internal node every leaf below its left child is paired with every
+    //  leaf below its right child, using the same root depths as
+    //  findEvolutionaryDistance.
+    public DistanceMatrix copheneticMatrix() {
+      int n = overallRoot.getNumLeafs();
+      DistanceMatrix matrix = new DistanceMatrix(n);
+      double[] leafDepth = new double[n];
+      int leaves = 0;
+
+      // Explicit stack: node, its weighted depth, the index of its first
+      // leaf, the index of its first right-subtree leaf, and visit state
+      int capacity = 64;
+      PhyloTreeNode[] nodes = new PhyloTreeNode[capacity];
+      double[] depths = new double[capacity];
+      int[] starts = new int[capacity];
+      int[] mids = new int[capacity];
+      int[] states = new int[capacity];
+      int top = 0;
+      nodes[top] = overallRoot;
+      depths[top] = 0.0;
+      states[top] = 0;
+      top++;
+
+      while (top > 0) {
+         int t = top - 1;
+         PhyloTreeNode node = nodes[t];
+         PhyloTreeNode child = null;
+
+         if (node.isLeaf()) {
+            leafDepth[leaves++] = depths[t];
+            top--;
+            continue;
+         }
+         if (states[t] == 0) {
+            starts[t] = leaves;
+            states[t] = 1;
+            child = node.getLeftChild();
+         }
+         else if (states[t] == 1) {
+            mids[t] = leaves;
+            states[t] = 2;
+            child = node.getRightChild();
+         }
+         else {
+            double twice = 2 * depths[t];
+            for (int x = starts[t]; x < mids[t]; x++) {
+               for (int y = mids[t]; y < leaves; y++) {
+                  matrix.set(x, y, leafDepth[x] + leafDepth[y] - twice);
+               }
+            }
+            top--;
+            continue;
+         }
+
+         if (top == capacity) {
+            capacity *= 2;
+            nodes = java.util.Arrays.copyOf(nodes, capacity);
+            depths = java.util.Arrays.copyOf(depths, capacity);
+            starts = java.util.Arrays.copyOf(starts, capacity);
+            mids = java.util.Arrays.copyOf(mids, capacity);
+            states = java.util.Arrays.copyOf(states, capacity);
+         }
+         nodes[top] = child;
+         depths[top] = depths[t] + node.getDistanceToChild();
+         states[top] = 0;
+         top++;
+      }
+      return matrix;
+    }
+
+    //  Writes the distance between every pair of species to file in the
+    //  given format (see DistanceMatrixWriter)
+    public void writeDistances(Path file, DistanceMatrixWriter.Format format) throws IOException {
+      List<Species> species = getAllSpecies();
+      String[] labels = new String[species.size()];
+      for (int i = 0; i < labels.length; i++) {
+         labels[i] = species.get(i).getName();
+      }
+      new DistanceMatrixWriter(format).write(labels, copheneticMatrix(), file);
+    }
+
+    public PhyloTreeNode findTreeNodeByLabel(String label) {
+    	return hm.get(label);
+    }
+
+     public PhyloTreeNode findLeastCommonAncestor(String label1, String label2) {
+        return findLeastCommonAncestor(hm.get(label1), hm.get(label2));
+    }
+    
+    //  - If both nodes can be found: returns the sum of the weights 
+    //    along the paths from their least common ancestor to each of
+    //    the two nodes
+    //  - Else: returns infinity
+    //  Answered in constant time from the LCA index as
+    //  depth(node1) + depth(node2) - 2 * depth(lca)
+   public double findEvolutionaryDistance(String label1, String label2) {   	 
+      PhyloTreeNode p1 = hm.get(label1);
+      PhyloTreeNode p2 = hm.get(label2);
+
+      if (p1 == null || p2 == null) {
+         return Double.POSITIVE_INFINITY;
+      }
+      return lcaIndex().distance(p1, p2);
+   }
+
+   // The LCA index of the current tree, built on first use after the tree
+   // was built or changed
+   LcaIndex lcaIndex() {
+      LcaIndex index = this.lcaIndex;
+      if (index == null) {
+         synchronized (this) {
+            index = this.lcaIndex;
+            if (index == null) {
+               index = new LcaIndex(overallRoot);
+               this.lcaIndex = index;
+            }
+         }
+      }
+      return index;
+   }
+
+   //  - Creates a linked tree structure representing the inferred hierarchical
+   //    species relationship.
+   private void buildTree(Species[] species, BuildOptions options) {
+      this.options = options;
+      this.insertedSinceBuild = 0;
+      PhyloTreeNode[] clusters = new PhyloTreeNode[species.length];
+      aggregates = new SubtreeAggregates(2 * species.length - 1);
+    	PhyloTreeNode pNode;
+    	
+    	// For every species in the array, add a new node with them to the forest
+    	// and store the node by label in a hash map. Cluster i of the distance 
+      // matrix starts out as species i.
+    	for(int i = 0; i < species.length; i++){
+    		pNode = new PhyloTreeNode(null, species[i]);
+    		clusters[i] = pNode;
+    		hm.put(species[i].getName(), pNode);
+    		aggregates.addLeaf(pNode);
+    	}
+
+      // Identical sequences are clustered once: cluster g starts out as a
+      // zero-length chain of the species in duplicate group g. Not before
+      // approximate clustering, whose sketches would see other input.
+      Species[] clustered = species;
+      int[] sizes = new int[species.length];
+      java.util.Arrays.fill(sizes, 1);
+      boolean approximate = options.getApproximateRefinement() > 0
+            && species.length > options.getApproximateRefinement();
+      if (options.isCollapseDuplicates() && options.getStrategy() instanceof LinkageClusterer && !approximate) {
+         DuplicateSequences duplicates = DuplicateSequences.of(species);
+         if (duplicates.getDuplicateCount() > 0) {
+            clustered = duplicates.getUnique();
+            sizes = new int[clustered.length];
+            for (int g = 0; g < clustered.length; g++) {
+               int[] members = duplicates.getMembers(g);
+               PhyloTreeNode chain = clusters[members[0]];
+               for (int k = 1; k < members.length; k++) {
+                  chain = join(chain, clusters[members[k]], 0.0);
+                  aggregates.addMerge(chain);
+               }
+               clusters[g] = chain;
+               sizes[g] = members.length;
+            }
+         }
+      }
+      
+    	// Until there is only the final node in the tree, keep creating 
+      // new parent nodes from nodes that have the smallest distance to each other. 
+      // The parent takes over the cluster id of its first child.
+    	MergeListener merge = (i, j, distance) -> {
+    		PhyloTreeNode node1 = clusters[i];
+    		PhyloTreeNode node2 = clusters[j];
+    		PhyloTreeNode parent;
+         
+    		if(node1.getLabel().compareTo(node2.getLabel()) < 0) {
+    			parent = new PhyloTreeNode(node1.getLabel() + "+" + node2.getLabel(), null, node1, node2, 
+                                     (distance/2.0));
+         }
+    		else {
+    			parent = new PhyloTreeNode(node2.getLabel() + "+" + node1.getLabel(), null, node2, node1, 
+                                     (distance/2.0));
+    		}
+         
+         hm.put(parent.getLabel(), parent);
+         aggregates.addMerge(parent);
+    		node1.setParent(parent);
+    		node2.setParent(parent);
+    		clusters[i] = parent;
+    		clusters[j] = null;
+    	};
+
+      if (approximate) {
+         // Sketches and a sparse neighbour graph stand in for the all-pairs
+         // distances (see SketchClusterer)
+         PhaseMetrics.Recorder phase = PhaseMetrics.start(options.getMetrics(), PhaseMetrics.Phase.CLUSTERING);
+         int root = new SketchClusterer(options.getStrategy(), options.getDistanceModel(),
+                                        options.getApproximateRefinement(), options.getParallelism())
+               .cluster(clustered, sizes, merge);
+         phase.end(species.length, clustered.length - 1, 0);
+         overallRoot = clusters[root];
+         aggregates.finish(overallRoot);
+         lcaIndex = null;
+         supports = null;
+         return;
+      }
+
+    	// Calculate the distance from every node in the forest to every other node
+    	PhaseMetrics.Recorder phase = PhaseMetrics.start(options.getMetrics(), PhaseMetrics.Phase.DISTANCES);
+    	DistanceMatrix distances = distances(clustered, options, phase);
+    	phase.end(species.length, DistanceMatrixBuilder.condensedSize(clustered.length), 0);
+    	
+    	phase = PhaseMetrics.start(options.getMetrics(), PhaseMetrics.Phase.CLUSTERING);
+    	options.getStrategy().cluster(distances, sizes, merge);
+    	phase.end(species.length, clustered.length - distances.activeCount(), 0);
+      
+    	if (distances.activeCount() == 1) {
+    		overallRoot = clusters[distances.activeId(0)];
+    		aggregates.finish(overallRoot);
+    	}
+    	lcaIndex = null;
+    	supports = null;
+    }
+
+   //  - Places one new leaf: starting from its nearest leaf, climbs while
+   //    the linkage distance to the cluster reached is at least the merge
+   //    distance of its parent (the leaf would not join that cluster before
+   //    the parent forms), then joins the leaf to the cluster reached.
+   //    Every ancestor of the new node is replaced, since labels and child
+   //    order depend on the leaves below.
+   private void insert(Species species) {
+      List<Species> leaves = aggregates.leaves();
+      double[] distance = new double[leaves.size()];
+      DistanceModel model = options.getDistanceModel();
+      SiteCounts counts = new SiteCounts();
+      int nearest = 0;
+      for (int i = 0; i < distance.length; i++) {
+         distance[i] = model.distance(species, leaves.get(i), null, counts);
+         if (distance[i] < distance[nearest]) {
+            nearest = i;
+         }
+      }
+
+      LinkageClusterer.Linkage linkage = options.getStrategy() instanceof LinkageClusterer
+            ? ((LinkageClusterer) options.getStrategy()).getLinkage()
+            : LinkageClusterer.Linkage.UPGMA;
+      PhyloTreeNode sibling = hm.get(leaves.get(nearest).getName());
+      double linked = distance[nearest];
+      while (sibling.getParent() != null && linked / 2.0 >= sibling.getParent().getDistanceToChild()) {
+         PhyloTreeNode parent = sibling.getParent();
+         PhyloTreeNode other = parent.getLeftChild() == sibling ? parent.getRightChild() : parent.getLeftChild();
+         double toOther = linkageDistance(linkage, other, distance);
+         double toParent;
+         switch (linkage) {
+            case WPGMA:
+               toParent = (linked + toOther) / 2.0;
+               break;
+            case SINGLE:
+               toParent = Math.min(linked, toOther);
+               break;
+            case COMPLETE:
+               toParent = Math.max(linked, toOther);
+               break;
+            default:
+               toParent = ((double) sibling.getNumLeafs() * linked + (double) other.getNumLeafs() * toOther)
+                     / parent.getNumLeafs();
+               break;
+         }
+         sibling = parent;
+         linked = toParent;
+      }
+
+      // Keep the new node between its children and its parent
+      double height = Math.max(linked / 2.0, sibling.isLeaf() ? 0.0 : sibling.getDistanceToChild());
+      if (sibling.getParent() != null) {
+         height = Math.min(height, sibling.getParent().getDistanceToChild());
+      }
+
+      PhyloTreeNode leaf = new PhyloTreeNode(null, species);
+      hm.put(species.getName(), leaf);
+      PhyloTreeNode parent = sibling.getParent();
+      PhyloTreeNode replacement = join(sibling, leaf, height);
+      PhyloTreeNode replaced = sibling;
+      while (parent != null) {
+         PhyloTreeNode other = parent.getLeftChild() == replaced ? parent.getRightChild() : parent.getLeftChild();
+         PhyloTreeNode grandparent = parent.getParent();
+         hm.remove(parent.getLabel());
+         replacement = join(other, replacement, parent.getDistanceToChild());
+         replaced = parent;
+         parent = grandparent;
+      }
+      overallRoot = replacement;
+      aggregates = SubtreeAggregates.of(overallRoot);
+      lcaIndex = null;
+      supports = null;
+   }
+
+   // Links a new parent above node1 and node2, labelled as buildTree does
+   private PhyloTreeNode join(PhyloTreeNode node1, PhyloTreeNode node2, double distanceToChild) {
+      PhyloTreeNode parent;
+      if (node1.getLabel().compareTo(node2.getLabel()) < 0) {
+         parent = new PhyloTreeNode(node1.getLabel() + "+" + node2.getLabel(), null, node1, node2, distanceToChild);
+      }
+      else {
+         parent = new PhyloTreeNode(node2.getLabel() + "+" + node1.getLabel(), null, node2, node1, distanceToChild);
+      }
+      hm.put(parent.getLabel(), parent);
+      node1.setParent(parent);
+      node2.setParent(parent);
+      return parent;
+   }
+
+   // - distance[k] is the distance from the new species to leaf k of
+   //   aggregates.leaves()
+   // - Returns the linkage distance from the new species to the cluster
+   //   below node
+   private double linkageDistance(LinkageClusterer.Linkage linkage, PhyloTreeNode node, double[] distance) {
+      int start = aggregates.leafStart(node);
+      int end = start + aggregates.leafCount(node);
+      if (linkage != LinkageClusterer.Linkage.WPGMA) {
+         double result = distance[start];
+         for (int k = start + 1; k < end; k++) {
+            switch (linkage) {
+               case SINGLE:
+                  result = Math.min(result, distance[k]);
+                  break;
+               case COMPLETE:
+                  result = Math.max(result, distance[k]);
+                  break;
+               default:
+                  result += distance[k];
+                  break;
+            }
+         }
+         return linkage == LinkageClusterer.Linkage.SINGLE || linkage == LinkageClusterer.Linkage.COMPLETE
+               ? result : result / (end - start);
+      }
+
+      // WPGMA weighs both children equally at every merge: evaluate the
+      // subtree bottom-up
+      ArrayDeque<PhyloTreeNode> pending = new ArrayDeque<PhyloTreeNode>();
+      ArrayList<PhyloTreeNode> order = new ArrayList<PhyloTreeNode>();
+      pending.push(node);
+      while (!pending.isEmpty()) {
+         PhyloTreeNode next = pending.pop();
+         order.add(next);
+         if (!next.isLeaf()) {
+            pending.push(next.getLeftChild());
+            pending.push(next.getRightChild());
+         }
+      }
+      java.util.IdentityHashMap<PhyloTreeNode,Double> linked = new java.util.IdentityHashMap<PhyloTreeNode,Double>();
+      for (int k = order.size() - 1; k >= 0; k--) {
+         PhyloTreeNode next = order.get(k);
+         linked.put(next, next.isLeaf() ? distance[aggregates.leafStart(next)]
+               : (linked.get(next.getLeftChild()) + linked.get(next.getRightChild())) / 2.0);
+      }
+      return linked.get(node);
+   }
+
+   //  All-pairs distances of species: from the cache if there is one, or
+   //  computed into a memory-mapped file when they would take more than
+   //  the heap budget (mapped matrices are not cached). Computed over the
+   //  site patterns of species unless turned off in options, or unless
+   //  the species use different encodings: SubstitutionKernel compares
+   //  those pairs residue by residue, which patterns of a single encoding
+   //  would not reproduce. Run by buildTree, and directly by tests.
+   static DistanceMatrix distances(Species[] species, BuildOptions options, PhaseMetrics.Recorder phase) {
+      DistanceMatrixBuilder builder = new DistanceMatrixBuilder(options.getParallelism()).measuring(phase)
+            .withModel(options.getDistanceModel());
+      Species[] aligned = species;
+      if (options.isCompressSites() && species.length >= SitePatterns.MIN_SPECIES
+            && SitePatterns.sharesEncoding(species)) {
+         SitePatterns patterns = SitePatterns.of(species);
+         if (options.getMetrics() != null) {
+            options.getMetrics().setSitePatterns(patterns.getSites(), patterns.getPatterns());
+         }
+         aligned = patterns.getSpecies();
+         builder.weighted(patterns.getWeights());
+      }
+      Species[] compared = aligned;
+      long size = DistanceMatrixBuilder.condensedSize(species.length);
+      if (size * 8 > options.getDistanceHeapBudget() || size > Integer.MAX_VALUE - 8) {
+         MappedDistanceStorage storage;
+         try {
+            storage = new MappedDistanceStorage(options.getSpillDirectory(), species.length,
+                                                options.isFloat32Distances());
+         }
+         catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+         }
+         builder.build(compared, storage);
+         return new DistanceMatrix(species.length, storage);
+      }
+
+      // Keyed by the full sequences, which give the same distances
+      DistanceMatrixCache cache = options.getDistanceCache();
+      return new DistanceMatrix(species.length, cache == null ? builder.build(compared)
+            : cache.computeIfAbsent(species, options.getDistanceModel().key(), () -> builder.build(compared)));
+   }
+
+   public static int nodeDepth(PhyloTreeNode node) {
+      int count = 0;
+      
+    	if (node != null) {
+    	   PhyloTreeNode parent = node.getParent();
+         
+        	while (parent != null){
+        	   count++;
+        	   parent = parent.getParent();
+        	}
+        	return count;	
+      }
+      
+      return -1;
+   }
+    
+   public static int nodeHeight(PhyloTreeNode node) {
+      if (node != null){
+         int l,r;
+         
+        	if (node.isLeaf()) {
+        		return 0;
+         }
+        	else {
+        		l = nodeHeight(node.getLeftChild());
+        		r = nodeHeight(node.getRightChild());
+        	   return 1 + (l >= r ? l : r); 
+         }
+      }
+        
+      return -1;
+   }
+
+   public static double weightedNodeHeight(PhyloTreeNode node) {
+      if (node != null) {
+         double l,r;
+         
+        	if (node.isLeaf()) {
+        		return 0.0;
+         }
+        	else{
+        		l = weightedNodeHeight(node.getLeftChild()) + node.getDistanceToChild();
+        		r = weightedNodeHeight(node.getRightChild()) + node.getDistanceToChild();
+        		return (l >= r ? l : r); 
+        	}
+      }
+      
+      return Double.NEGATIVE_INFINITY;
+   }
+
+   //  - Returns every species of the aligned FASTA file, in file order
+   //  - Throws FastaFormatException (with the byte offset) if the file
+   //    cannot be parsed or its sequences differ in length
+   public static Species[] loadSpeciesFile(String filename) throws IOException {
+      return FastaReader.read(Paths.get(filename));
+   }
+
+   //  loadSpeciesFile, measured as the parse phase of metrics (if any)
+   static Species[] loadSpeciesFile(String filename, PhaseMetrics metrics) throws IOException {
+      PhaseMetrics.Recorder phase = PhaseMetrics.start(metrics, PhaseMetrics.Phase.PARSE);
+      Species[] species = loadSpeciesFile(filename);
+      phase.end(species.length, species.length, 0);
+      return species;
+   }
+
+/*    // getAllDescendantSpecies
+    // Pre-conditions:
+    //    - node points to a node of this tree
+    // Post-conditions:
+    //    - Returns all species in the subtree rooted at node, left to right,
+    //      as an unmodifiable slice of getAllSpecies(); nothing is copied*/
+    private List<Species> getAllDescendantSpecies(PhyloTreeNode node) {
+       int start = aggregates.leafStart(node);
+       return aggregates.leaves().subList(start, start + aggregates.leafCount(node));
+    }
+
+/*    // findLeastCommonAncestor
+    // Pre-conditions:
+    //    - node1 and node2 point to nodes in the phylogenetic tree
+    // Post-conditions:
+    //    - If node1 or node2 are null, return null
+    //    - Else: returns the PhyloTreeNode of their common ancestor 
+    //      with the largest depth*/
+     /*private static PhyloTreeNode findLeastCommonAncestor(PhyloTreeNode node1, PhyloTreeNode node2) {
+    	 
+    	// Recursively finds all ancestors which node1 and node2 share and then returns the deepest (least common)
+        if(node1 == null || node2 == null)
+    	 return null;
+        else{
+        	PhyloTreeNode l,r;
+        	if(node1.equals(node2))
+        		return node1;
+        	l = findLeastCommonAncestor(node1.getParent(), node2);
+        	r = findLeastCommonAncestor(node1, node2.getParent());
+        	if (l == null)
+        		return r;
+        	else if (r == null)
+        		return l;
+        	else
+        		return nodeDepth(l) > nodeDepth(r) ? l : r;
+        }
+    }*/
+    
+    private PhyloTreeNode findLeastCommonAncestor(PhyloTreeNode node1, PhyloTreeNode node2) {
+      if (node1 == null || node2 == null) {
+         return null;
+      }
+      return lcaIndex().lca(node1, node2);
+    }
+    
+     /*    // weightedNodeDepth
+     // Pre-conditions:
+     //    - node is null or the root of tree (possibly subtree)
+     // Post-conditions:
+     //    - If null: returns -1
+     //    - Else: returns the depth of the node within the overall tree*/
+     public static double weightedNodeDepth(PhyloTreeNode node) {
+    	 
+    	// Walks up from node to overallRoot summing the weights along the way. 
+        double i = 0;
+     	if (node != null){
+     		PhyloTreeNode parent = node.getParent();
+         	while (parent != null){
+         	i += parent.getDistanceToChild();
+         	parent = parent.getParent();
+         	}
+         	return i;	
+         }
+         else
+         	return -1;
+     }
+}
@@ -0,0 +1,76 @@
+package phylotree;
+
+/*
+ * A node of a PhyloTree. Leaves hold a species and are labelled with its
+ * name; internal nodes join exactly two subtrees at distanceToChild.
+ */
+
+public class PhyloTreeNode {
+    private String label;                   // Species name, or the joined labels of the subtree
+    private PhyloTreeNode parent;           // Null for the root
+    private PhyloTreeNode leftChild;        // Both children are null for a leaf
+    private PhyloTreeNode rightChild;
+    private Species species;                // Null for internal nodes
+    private double distanceToChild;         // Branch length to each child
+    private int numLeafs;                   // Number of species in the subtree
+
+    // - Creates a leaf for species
+    public PhyloTreeNode(PhyloTreeNode parent, Species species) {
+        this.label = species.getName();
+        this.parent = parent;
+        this.species = species;
+        this.numLeafs = 1;
+    }
+
+    // - Creates an internal node joining leftChild and rightChild
+    public PhyloTreeNode(String label, PhyloTreeNode parent, PhyloTreeNode leftChild,
+                         PhyloTreeNode rightChild, double distanceToChild) {
+        this.label = label;
+        this.parent = parent;
+        this.leftChild = leftChild;
+        this.rightChild = rightChild;
+        this.distanceToChild = distanceToChild;
+        this.numLeafs = (leftChild == null ? 0 : leftChild.getNumLeafs())
+                        + (rightChild == null ? 0 : rightChild.getNumLeafs());
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+
+    public Species getSpecies() {
+        return this.species;
+    }
+
+    public PhyloTreeNode getParent() {
+        return this.parent;
+    }
+
+    public void setParent(PhyloTreeNode parent) {
+        this.parent = parent;
+    }
+
+    public PhyloTreeNode getLeftChild() {
+        return this.leftChild;
+    }
+
+    public PhyloTreeNode getRightChild() {
+        return this.rightChild;
+    }
+
+    public double getDistanceToChild() {
+        return this.distanceToChild;
+    }
+
+    public int getNumLeafs() {
+        return this.numLeafs;
+    }
+
+    public boolean isLeaf() {
+        return this.leftChild == null && this.rightChild == null;
+    }
+
+    public String toString() {
+        return this.label;
+    }
+}
@@ -0,0 +1,79 @@
+package phylotree;
+
+/*
+ * Cache of the closest later cluster of every row of a DistanceMatrix:
+ * arg(i) is the active j > i with the smallest distance to i (ties to
+ * the smallest j), or -1. Scanning the cached rows in id order gives the
+ * same closest pair as scanning the whole triangle.
+ */
+
+class RowMinima {
+    private final int[] rowArg;
+
+    RowMinima(DistanceMatrix distances) {
+        this.rowArg = new int[distances.size()];
+        for (int k = 0; k < distances.activeCount(); k++) {
+            int i = distances.activeId(k);
+            rowArg[i] = distances.nearestAfter(i);
+        }
+    }
+
+    int arg(int i) {
+        return rowArg[i];
+    }
+
+    //  Cached minimum of row i, infinite if the row is empty
+    double min(DistanceMatrix distances, int i) {
+        return rowArg[i] < 0 ? Double.POSITIVE_INFINITY : distances.get(i, rowArg[i]);
+    }
+
+    //  - Returns the closest active pair as found by DistanceMatrix.minPair
+    DistanceMatrix.Pair minPair(DistanceMatrix distances) {
+        double d = Double.POSITIVE_INFINITY;
+        int bestI = -1;
+        for (int k = 0; k < distances.activeCount(); k++) {
+            int i = distances.activeId(k);
+            if (rowArg[i] >= 0) {
+                double value = distances.get(i, rowArg[i]);
+                if (value < d) {
+                    d = value;
+                    bestI = i;
+                }
+            }
+        }
+
+        if (bestI < 0) {
+            int i = distances.activeId(0);
+            int j = distances.activeId(1);
+            return new DistanceMatrix.Pair(i, j, distances.get(i, j));
+        }
+        return new DistanceMatrix.Pair(bestI, rowArg[bestI], d);
+    }
+
+    //  - Cluster j has just been deactivated and row/column i rewritten
+    //  - Only row i and rows whose minimum pointed at i or j need a rescan;
+    //    any other row can at most have gained a closer cluster i
+    void merged(DistanceMatrix distances, int i, int j) {
+        for (int k = 0; k < distances.activeCount(); k++) {
+            int r = distances.activeId(k);
+            if (r == i) {
+                rowArg[r] = distances.nearestAfter(r);
+            }
+            else if (r < i) {
+                if (rowArg[r] == i || rowArg[r] == j) {
+                    rowArg[r] = distances.nearestAfter(r);
+                }
+                else {
+                    double value = distances.get(r, i);
+                    double current = min(distances, r);
+                    if (value < current || (value == current && i < rowArg[r])) {
+                        rowArg[r] = i;
+                    }
+                }
+            }
+            else if (r < j && rowArg[r] == j) {
+                rowArg[r] = distances.nearestAfter(r);
+            }
+        }
+    }
+}
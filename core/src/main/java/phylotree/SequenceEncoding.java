@@ -0,0 +1,107 @@
+package phylotree;
+
+/*
+ * Describes how the residues of an aligned sequence are packed into
+ * 64-bit words. Narrow nucleotide alphabets are bit-packed, anything
+ * else is stored one byte per residue.
+ *
+ * Residue i of a sequence lives in word (i / residuesPerWord()) at bit
+ * offset (i % residuesPerWord()) * bitsPerResidue(). Unused lanes of the
+ * last word are always zero, so two sequences of the same length and
+ * encoding can be compared word by word.
+ */
+
+public enum SequenceEncoding {
+    // Unambiguous, gap-free DNA: A=0, C=1, G=2, T=3
+    NUCLEOTIDE_2BIT(2, "ACGT"),
+
+    // IUPAC nucleotides as a bitmask over A=1, C=2, G=4, T=8, so that
+    // ambiguity codes are the union of the bases they stand for and the
+    // gap ('-') is the empty set
+    NUCLEOTIDE_4BIT(4, "-ACMGRSVTWYHKDBN"),
+
+    // One raw byte per residue (protein, lowercase or otherwise unusual input)
+    BYTE(8, null);
+
+    private final int bitsPerResidue;
+    private final char[] decode;     // code -> residue, null for BYTE
+    private final int[] encode;      // residue -> code, -1 if not representable
+
+    SequenceEncoding(int bitsPerResidue, String alphabet) {
+        this.bitsPerResidue = bitsPerResidue;
+        this.encode = new int[256];
+
+        if (alphabet == null) {
+            this.decode = null;
+            for (int c = 0; c < 256; c++) {
+                encode[c] = c;
+            }
+        }
+        else {
+            this.decode = alphabet.toCharArray();
+            java.util.Arrays.fill(encode, -1);
+            for (int code = 0; code < decode.length; code++) {
+                encode[decode[code]] = code;
+            }
+        }
+    }
+
+    public int bitsPerResidue() {
+        return this.bitsPerResidue;
+    }
+
+    public int residuesPerWord() {
+        return 64 / this.bitsPerResidue;
+    }
+
+    // Mask selecting a single residue lane in the low bits of a word
+    public long laneMask() {
+        return (1L << this.bitsPerResidue) - 1;
+    }
+
+    // Number of 64-bit words needed to hold length residues
+    public int wordsFor(int length) {
+        int perWord = residuesPerWord();
+        return (length + perWord - 1) / perWord;
+    }
+
+    //  Returns the code for residue c, or -1 if this encoding cannot
+    //  represent it
+    public int encode(char c) {
+        return c < 256 ? encode[c] : -1;
+    }
+
+    public char decode(int code) {
+        return decode == null ? (char) code : decode[code];
+    }
+
+    //  - present[c] is true for every residue c occurring in the alignment
+    //  - Returns the narrowest encoding able to represent all of them
+    public static SequenceEncoding narrowest(boolean[] present) {
+        for (SequenceEncoding e : values()) {
+            boolean fits = true;
+            for (int c = 0; c < present.length && fits; c++) {
+                if (present[c] && e.encode[c] < 0) {
+                    fits = false;
+                }
+            }
+            if (fits) {
+                return e;
+            }
+        }
+        return BYTE;
+    }
+
+    //  Marks every residue in sequence as present. Returns false if the
+    //  sequence contains a character that does not fit in a single byte.
+    public static boolean markResidues(CharSequence sequence, boolean[] present) {
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            if (c >= 256) {
+                return false;
+            }
+            present[c] = true;
+        }
+        return true;
+    }
+}
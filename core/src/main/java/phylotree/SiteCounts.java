@@ -0,0 +1,55 @@
+package phylotree;
+
+/*
+ * Tallies of one pairwise comparison of aligned sequences, filled in by
+ * SubstitutionKernel and turned into a distance by a DistanceModel:
+ *
+ *   sites                 columns compared (weighted, see ColumnWeights)
+ *   differences           columns whose residues differ, gaps included
+ *   compared              columns where both residues are unambiguous
+ *                         (no gap, no ambiguity code)
+ *   compared differences  differing columns among the compared ones
+ *   transitions           A<->G and C<->T among the compared ones
+ *   transversions         purine<->pyrimidine among the compared ones
+ *
+ * Only nucleotide pairs can be transitions or transversions, so for
+ * protein sequences both stay 0. A SiteCounts is reused from pair to
+ * pair by one thread; it is not thread-safe.
+ */
+
+public class SiteCounts {
+    long sites;
+    long differences;
+    long compared;
+    long comparedDifferences;
+    long transitions;
+    long transversions;
+
+    public long getSites() {
+        return sites;
+    }
+
+    public long getDifferences() {
+        return differences;
+    }
+
+    public long getCompared() {
+        return compared;
+    }
+
+    public long getComparedDifferences() {
+        return comparedDifferences;
+    }
+
+    public long getTransitions() {
+        return transitions;
+    }
+
+    public long getTransversions() {
+        return transversions;
+    }
+
+    void clear() {
+        sites = differences = compared = comparedDifferences = transitions = transversions = 0;
+    }
+}
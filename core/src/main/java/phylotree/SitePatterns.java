@@ -0,0 +1,181 @@
+package phylotree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * An alignment reduced to its distinct site patterns: identical columns
+ * are kept once, with the number of times they occur as their
+ * ColumnWeights weight, and constant columns (one residue, or all gaps,
+ * down every sequence) are dropped entirely. A constant column never
+ * differs between two sequences, so the weights only remember how many
+ * of them there were and whether their residue counts as compared (see
+ * SiteCounts): every DistanceModel gives the same distances over the
+ * patterns as over the full alignment.
+ *
+ * Columns are grouped by a 64-bit hash built one sequence at a time, and
+ * a column only joins a pattern after comparing equal to it residue by
+ * residue, so hash collisions cannot merge different columns.
+ */
+
+public class SitePatterns {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Compressing reads every residue once, while the all-pairs stage reads
+    // each about n / 2 times: below this many species it does not pay off
+    public static final int MIN_SPECIES = 16;
+
+    private final Species[] species;
+    private final ColumnWeights weights;
+    private final int sites;
+
+    private SitePatterns(Species[] species, ColumnWeights weights, int sites) {
+        this.species = species;
+        this.weights = weights;
+        this.sites = sites;
+    }
+
+    //  - Returns whether species can be compressed: every sequence has the
+    //    length and encoding of the first
+    public static boolean sharesEncoding(Species[] species) {
+        for (Species s : species) {
+            if (s.getLength() != species[0].getLength() || s.getEncoding() != species[0].getEncoding()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //  - species is a non-empty aligned set sharing one encoding (see
+    //    sharesEncoding)
+    //  - Returns the patterns of species. The compressed sequences keep
+    //    the names and encoding of the originals.
+    public static SitePatterns of(Species[] species) {
+        SequenceEncoding encoding = species[0].getEncoding();
+        int length = species[0].getLength();
+        int bits = encoding.bitsPerResidue();
+        int perWord = encoding.residuesPerWord();
+        long mask = encoding.laneMask();
+
+        // Hash every column, and OR together how each sequence differs from
+        // the first: the lanes still zero at the end are constant columns
+        long[] first = species[0].words();
+        long[] varies = new long[first.length];
+        long[] hash = new long[length];
+        java.util.Arrays.fill(hash, FNV_OFFSET);
+        for (Species s : species) {
+            if (s.getLength() != length || s.getEncoding() != encoding) {
+                throw new IllegalArgumentException("Sequences must already be aligned with one encoding: "
+                                                   + species[0].getName() + ", " + s.getName());
+            }
+            long[] words = s.words();
+            for (int w = 0, c = 0; w < words.length; w++) {
+                varies[w] |= words[w] ^ first[w];
+                long word = words[w];
+                for (int lane = 0; lane < perWord && c < length; lane++, c++) {
+                    hash[c] = (hash[c] ^ (word & mask)) * FNV_PRIME;
+                    word >>>= bits;
+                }
+            }
+        }
+
+        // Columns represented by each pattern, and the patterns by hash
+        List<Integer> columns = new ArrayList<Integer>();
+        List<Integer> counts = new ArrayList<Integer>();
+        Map<Long,List<Integer>> byHash = new HashMap<Long,List<Integer>>();
+        long constantCompared = 0, constantExcluded = 0;
+        for (int c = 0; c < length; c++) {
+            if (code(varies, c, perWord, bits, mask) == 0) {
+                if (SubstitutionKernel.isCompared(encoding, species[0].residueAt(c))) {
+                    constantCompared++;
+                }
+                else {
+                    constantExcluded++;
+                }
+                continue;
+            }
+            List<Integer> candidates = byHash.computeIfAbsent(hash[c], h -> new ArrayList<Integer>(1));
+            int pattern = -1;
+            for (int p : candidates) {
+                if (sameColumn(species, columns.get(p), c, perWord, bits, mask)) {
+                    pattern = p;
+                    break;
+                }
+            }
+            if (pattern < 0) {
+                pattern = columns.size();
+                columns.add(c);
+                counts.add(0);
+                candidates.add(pattern);
+            }
+            counts.set(pattern, counts.get(pattern) + 1);
+        }
+
+        // Heaviest patterns first, so that most packed words hold columns
+        // of a single weight (see ColumnWeights.uniformWeights)
+        Integer[] order = new Integer[columns.size()];
+        for (int p = 0; p < order.length; p++) {
+            order[p] = p;
+        }
+        java.util.Arrays.sort(order, (p, q) -> Integer.compare(counts.get(q), counts.get(p)));
+        int[] weights = new int[order.length];
+        int[] source = new int[order.length];
+        for (int p = 0; p < order.length; p++) {
+            weights[p] = counts.get(order[p]);
+            source[p] = columns.get(order[p]);
+        }
+
+        Species[] compressed = new Species[species.length];
+        for (int i = 0; i < species.length; i++) {
+            long[] words = species[i].words();
+            long[] packed = new long[encoding.wordsFor(source.length)];
+            for (int p = 0; p < source.length; p++) {
+                packed[p / perWord] |= code(words, source[p], perWord, bits, mask) << ((p % perWord) * bits);
+            }
+            compressed[i] = new Species(species[i].getName(), encoding, source.length, packed);
+        }
+        return new SitePatterns(compressed, new ColumnWeights(weights, constantCompared, constantExcluded),
+                                length);
+    }
+
+    private static long code(long[] words, int c, int perWord, int bits, long mask) {
+        return (words[c / perWord] >>> ((c % perWord) * bits)) & mask;
+    }
+
+    private static boolean sameColumn(Species[] species, int c, int d, int perWord, int bits, long mask) {
+        for (Species s : species) {
+            long[] words = s.words();
+            if (code(words, c, perWord, bits, mask) != code(words, d, perWord, bits, mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // One sequence per input species, holding only the pattern columns
+    public Species[] getSpecies() {
+        return species;
+    }
+
+    // Weight of every pattern, plus the dropped constant columns
+    public ColumnWeights getWeights() {
+        return weights;
+    }
+
+    // Columns of the original alignment
+    public int getSites() {
+        return sites;
+    }
+
+    public int getPatterns() {
+        return weights.length();
+    }
+
+    // Original columns per pattern column kept
+    public double getCompressionRatio() {
+        return (double) sites / Math.max(1, getPatterns());
+    }
+}
@@ -0,0 +1,581 @@
+package phylotree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Approximate clustering for alignments too large for an n^2 distance
+ * matrix. Nothing here compares every pair:
+ *
+ *   1. Every sequence gets a MinHashSketch, in parallel.
+ *   2. Locality-sensitive hashing: the sketch is cut into bands of ROWS
+ *      bins, and sequences whose band values all agree land in the same
+ *      bucket. Each member of a bucket is compared (by sketch) with the
+ *      next WINDOW members only, and every sequence keeps its NEIGHBOURS
+ *      closest candidates.
+ *   3. The neighbour graph is clustered by average linkage over the
+ *      edges it has: the closest edge is merged, and the merged cluster
+ *      inherits both edge lists, averaging edges to a common neighbour.
+ *      Clusters left without edges are bucketed again with fewer rows
+ *      per band, which finds more distant candidates, and once at most
+ *      DENSE_LIMIT remain they are finished by UPGMA over their sketches.
+ *   4. Every maximal subtree of at most refinementSize sequences is
+ *      rebuilt from exact distances (DistanceModel) with the configured
+ *      ClusteringStrategy, so only the coarse levels rest on estimates.
+ *
+ * Sketching, candidate comparison and refinement take O(n) time each for
+ * fixed parameters, and the sparse clustering O(n log n).
+ */
+
+public class SketchClusterer {
+    private static final int ROWS = 4;
+    private static final int WINDOW = 4;
+    private static final int NEIGHBOURS = 12;
+    private static final int MAX_EDGES = 2 * NEIGHBOURS;
+    private static final int DENSE_LIMIT = 2048;
+
+    private final ClusteringStrategy strategy;
+    private final DistanceModel model;
+    private final int refinementSize;
+    private final int parallelism;
+
+    //  - refinementSize >= 2: largest subtree rebuilt from exact distances
+    //  - parallelism >= 1 threads sketch, compare and refine
+    public SketchClusterer(ClusteringStrategy strategy, DistanceModel model, int refinementSize,
+                           int parallelism) {
+        if (refinementSize < 2) {
+            throw new IllegalArgumentException("Refinement size must be at least 2: " + refinementSize);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.strategy = strategy;
+        this.model = model;
+        this.refinementSize = refinementSize;
+        this.parallelism = parallelism;
+    }
+
+    //  - species is a non-empty aligned set, sizes[i] >= 1 is the number of
+    //    leaves in cluster i (see ClusteringStrategy)
+    //  - Merges all of species into one cluster, reporting every merge to
+    //    listener in the order of ClusteringStrategy.cluster, and returns
+    //    the id of the final cluster
+    public int cluster(Species[] species, int[] sizes, MergeListener listener) {
+        int n = species.length;
+        if (n == 1) {
+            return 0;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int[][] sketches = new int[n][];
+            pool.invoke(new Range(0, n, i -> sketches[i] = MinHashSketch.of(species[i])));
+
+            Merges coarse = new Merges(n);
+            int[] clusterSizes = sizes.clone();
+            int[] roots = new int[n];
+            for (int i = 0; i < n; i++) {
+                roots[i] = i;
+            }
+            int rows = ROWS;
+            do {
+                roots = neighbours(roots, sketches, rows, pool).merge(clusterSizes, coarse);
+                rows /= 2;
+            } while (roots.length > DENSE_LIMIT && rows >= 1);
+            if (roots.length > DENSE_LIMIT) {
+                // Not even one bin in common with any candidate: unrelated
+                // as far as the sketches can tell
+                for (int k = 1; k < roots.length; k++) {
+                    coarse.add(roots[0], roots[k], model.estimate(1.0));
+                }
+            }
+            else if (roots.length > 1) {
+                finish(roots, sketches, clusterSizes, coarse);
+            }
+            return refine(species, sizes, coarse, listener, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    //  Candidate edges between the clusters represented by roots: LSH
+    //  buckets over bands of rows bins, compared within a window
+    private Graph neighbours(int[] roots, int[][] sketches, int rows, ForkJoinPool pool) {
+        int m = roots.length;
+        int indexBits = 32 - Integer.numberOfLeadingZeros(m);
+        long indexMask = (1L << indexBits) - 1;
+        Graph graph = new Graph(roots);
+
+        long[] keys = new long[m];
+        for (int band = 0; band + rows <= MinHashSketch.SIZE; band += rows) {
+            for (int t = 0; t < m; t++) {
+                long h = band;
+                for (int r = 0; r < rows; r++) {
+                    h = (h ^ sketches[roots[t]][band + r]) * 0x100000001B3L;
+                }
+                keys[t] = (h & ~indexMask) | t;
+            }
+            Arrays.parallelSort(keys);
+
+            // Pairs of members of one bucket at most WINDOW apart
+            int[] pairs = new int[2 * m * WINDOW];
+            int count = 0;
+            for (int s = 0; s < m; ) {
+                int e = s + 1;
+                while (e < m && (keys[e] & ~indexMask) == (keys[s] & ~indexMask)) {
+                    e++;
+                }
+                for (int t = s; t < e; t++) {
+                    for (int u = t + 1; u < e && u <= t + WINDOW; u++) {
+                        pairs[count++] = (int) (keys[t] & indexMask);
+                        pairs[count++] = (int) (keys[u] & indexMask);
+                    }
+                }
+                s = e;
+            }
+
+            double[] distances = new double[count / 2];
+            pool.invoke(new Range(0, distances.length, k -> distances[k] = model.estimate(
+                    MinHashSketch.distance(sketches[roots[pairs[2 * k]]], sketches[roots[pairs[2 * k + 1]]]))));
+            for (int k = 0; k < distances.length; k++) {
+                graph.offer(pairs[2 * k], pairs[2 * k + 1], distances[k]);
+            }
+        }
+        return graph;
+    }
+
+    // UPGMA over sketch distances between the representatives of roots
+    private void finish(int[] roots, int[][] sketches, int[] clusterSizes, Merges coarse) {
+        int m = roots.length;
+        DistanceMatrix distances = new DistanceMatrix(m);
+        for (int a = 0; a < m; a++) {
+            for (int b = a + 1; b < m; b++) {
+                distances.set(a, b, model.estimate(MinHashSketch.distance(sketches[roots[a]],
+                                                                          sketches[roots[b]])));
+            }
+        }
+        int[] local = new int[m];
+        for (int a = 0; a < m; a++) {
+            local[a] = clusterSizes[roots[a]];
+        }
+        ClusteringStrategy.UPGMA.cluster(distances, local, (i, j, distance) -> {
+            coarse.add(Math.min(roots[i], roots[j]), Math.max(roots[i], roots[j]), distance);
+            roots[i] = Math.min(roots[i], roots[j]);
+        });
+    }
+
+    //  Replaces every maximal subtree of at most refinementSize leaves of
+    //  coarse with an exact clustering of its species, and reports the
+    //  result to listener
+    private int refine(Species[] species, int[] sizes, Merges coarse, MergeListener listener,
+                       ForkJoinPool pool) {
+        int n = species.length;
+        int merges = coarse.count;
+
+        // Merge tree: the merge (or leaf, -1) each side of a merge came from
+        int[] latest = new int[n];
+        Arrays.fill(latest, -1);
+        int[] left = new int[merges];
+        int[] right = new int[merges];
+        int[] leaves = new int[merges];
+        int[] parent = new int[merges];
+        Arrays.fill(parent, -1);
+        for (int k = 0; k < merges; k++) {
+            left[k] = latest[coarse.first[k]];
+            right[k] = latest[coarse.second[k]];
+            leaves[k] = (left[k] < 0 ? 1 : leaves[left[k]]) + (right[k] < 0 ? 1 : leaves[right[k]]);
+            if (left[k] >= 0) {
+                parent[left[k]] = k;
+            }
+            if (right[k] >= 0) {
+                parent[right[k]] = k;
+            }
+            latest[coarse.first[k]] = k;
+        }
+
+        List<Integer> tops = new ArrayList<Integer>();
+        boolean[] refined = new boolean[merges];
+        for (int k = 0; k < merges; k++) {
+            if (leaves[k] <= refinementSize && (parent[k] < 0 || leaves[parent[k]] > refinementSize)) {
+                tops.add(k);
+            }
+        }
+
+        Merges[] exact = new Merges[tops.size()];
+        pool.invoke(new Range(0, exact.length, t -> {
+            exact[t] = exact(species, sizes, subtree(tops.get(t), left, right, coarse));
+        }));
+        for (int top : tops) {
+            markSubtree(top, left, right, refined);
+        }
+
+        // Replay the coarse merges, splicing in the exact subtrees; emitted
+        // maps a coarse cluster id to the id it has in what was reported
+        int[] emitted = new int[n];
+        for (int i = 0; i < n; i++) {
+            emitted[i] = i;
+        }
+        int next = 0;
+        for (int k = 0; k < merges; k++) {
+            if (next < tops.size() && tops.get(next) == k) {
+                Merges subtree = exact[next++];
+                int root = -1;
+                for (int e = 0; e < subtree.count; e++) {
+                    listener.merged(subtree.first[e], subtree.second[e], subtree.distance[e]);
+                    root = subtree.first[e];
+                }
+                emitted[coarse.first[k]] = root;
+            }
+            else if (!refined[k]) {
+                int i = emitted[coarse.first[k]];
+                int j = emitted[coarse.second[k]];
+                listener.merged(Math.min(i, j), Math.max(i, j), coarse.distance[k]);
+                emitted[coarse.first[k]] = Math.min(i, j);
+            }
+        }
+        return emitted[coarse.first[merges - 1]];
+    }
+
+    // Leaf ids below merge top, ascending
+    private static int[] subtree(int top, int[] left, int[] right, Merges coarse) {
+        List<Integer> ids = new ArrayList<Integer>();
+        java.util.ArrayDeque<Integer> pending = new java.util.ArrayDeque<Integer>();
+        pending.push(top);
+        while (!pending.isEmpty()) {
+            int k = pending.pop();
+            if (left[k] < 0) {
+                ids.add(coarse.first[k]);
+            }
+            else {
+                pending.push(left[k]);
+            }
+            if (right[k] < 0) {
+                ids.add(coarse.second[k]);
+            }
+            else {
+                pending.push(right[k]);
+            }
+        }
+        int[] sorted = new int[ids.size()];
+        for (int k = 0; k < sorted.length; k++) {
+            sorted[k] = ids.get(k);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void markSubtree(int top, int[] left, int[] right, boolean[] refined) {
+        java.util.ArrayDeque<Integer> pending = new java.util.ArrayDeque<Integer>();
+        pending.push(top);
+        while (!pending.isEmpty()) {
+            int k = pending.pop();
+            refined[k] = true;
+            if (left[k] >= 0) {
+                pending.push(left[k]);
+            }
+            if (right[k] >= 0) {
+                pending.push(right[k]);
+            }
+        }
+    }
+
+    // The merges of the configured strategy over the exact distances of
+    // species ids (ascending), in global ids
+    private Merges exact(Species[] species, int[] sizes, int[] ids) {
+        Species[] members = new Species[ids.length];
+        int[] local = new int[ids.length];
+        for (int k = 0; k < ids.length; k++) {
+            members[k] = species[ids[k]];
+            local[k] = sizes[ids[k]];
+        }
+        DistanceMatrix distances = new DistanceMatrix(ids.length,
+                new DistanceMatrixBuilder(1).withModel(model).build(members));
+        Merges merges = new Merges(ids.length);
+        strategy.cluster(distances, local, (i, j, distance) -> merges.add(ids[i], ids[j], distance));
+        return merges;
+    }
+
+    // Merges in the order chosen, the survivor first
+    private static class Merges {
+        int[] first, second;
+        double[] distance;
+        int count;
+
+        Merges(int n) {
+            first = new int[Math.max(1, n - 1)];
+            second = new int[first.length];
+            distance = new double[first.length];
+        }
+
+        void add(int i, int j, double d) {
+            first[count] = i;
+            second[count] = j;
+            distance[count] = d;
+            count++;
+        }
+    }
+
+    // Sparse average linkage over the candidate edges between some clusters
+    private static class Graph {
+        private final int[] roots;          // Cluster id of each vertex
+        private final int[][] targets;      // By vertex: neighbouring vertices
+        private final double[][] weights;   // By vertex: distance to each
+        private final int[] degree;
+
+        Graph(int[] roots) {
+            this.roots = roots;
+            this.targets = new int[roots.length][];
+            this.weights = new double[roots.length][];
+            this.degree = new int[roots.length];
+        }
+
+        //  Keeps the edge (a, b) if it is among the NEIGHBOURS closest of a
+        //  or of b
+        void offer(int a, int b, double distance) {
+            keep(a, b, distance, NEIGHBOURS);
+            keep(b, a, distance, NEIGHBOURS);
+        }
+
+        // Adds or updates the edge a -> b, dropping a's farthest edge when
+        // it already has limit
+        private void keep(int a, int b, double distance, int limit) {
+            if (targets[a] == null) {
+                targets[a] = new int[4];
+                weights[a] = new double[4];
+            }
+            int worst = -1;
+            for (int k = 0; k < degree[a]; k++) {
+                if (targets[a][k] == b) {
+                    weights[a][k] = distance;
+                    return;
+                }
+                if (worst < 0 || weights[a][k] > weights[a][worst]) {
+                    worst = k;
+                }
+            }
+            if (degree[a] < limit) {
+                if (degree[a] == targets[a].length) {
+                    targets[a] = Arrays.copyOf(targets[a], Math.min(limit, 2 * degree[a]));
+                    weights[a] = Arrays.copyOf(weights[a], targets[a].length);
+                }
+                targets[a][degree[a]] = b;
+                weights[a][degree[a]++] = distance;
+            }
+            else if (distance < weights[a][worst]) {
+                targets[a][worst] = b;
+                weights[a][worst] = distance;
+            }
+        }
+
+        private double weight(int a, int b) {
+            for (int k = 0; k < degree[a]; k++) {
+                if (targets[a][k] == b) {
+                    return weights[a][k];
+                }
+            }
+            return Double.NaN;
+        }
+
+        private void remove(int a, int b) {
+            for (int k = 0; k < degree[a]; k++) {
+                if (targets[a][k] == b) {
+                    degree[a]--;
+                    targets[a][k] = targets[a][degree[a]];
+                    weights[a][k] = weights[a][degree[a]];
+                    return;
+                }
+            }
+        }
+
+        //  Merges along the closest edges until none is left, adding the
+        //  merges to coarse and the sizes of merged clusters to sizes, and
+        //  returns the clusters remaining
+        int[] merge(int[] sizes, Merges coarse) {
+            int m = roots.length;
+            int[] version = new int[m];
+            boolean[] alive = new boolean[m];
+            Arrays.fill(alive, true);
+            EdgeHeap heap = new EdgeHeap();
+            for (int a = 0; a < m; a++) {
+                for (int k = 0; k < degree[a]; k++) {
+                    heap.push(weights[a][k], a, targets[a][k], 0, 0);
+                }
+            }
+
+            int remaining = m;
+            while (heap.size() > 0) {
+                double distance = heap.topDistance();
+                int a = heap.topA(), b = heap.topB();
+                boolean current = heap.topVersionA() == version[a] && heap.topVersionB() == version[b];
+                heap.pop();
+                if (!alive[a] || !alive[b] || !current) {
+                    continue;
+                }
+
+                // The vertex with the smaller cluster id survives
+                int keep = roots[a] < roots[b] ? a : b;
+                int gone = keep == a ? b : a;
+                coarse.add(roots[keep], roots[gone], distance);
+                double total = sizes[roots[keep]] + sizes[roots[gone]];
+                double wKeep = sizes[roots[keep]] / total, wGone = sizes[roots[gone]] / total;
+
+                // Average the edges to common neighbours, keep the others
+                remove(keep, gone);
+                for (int k = 0; k < degree[gone]; k++) {
+                    int z = targets[gone][k];
+                    if (z == keep || !alive[z]) {
+                        continue;
+                    }
+                    double dk = weight(keep, z);
+                    double dz = weights[gone][k];
+                    double d = Double.isNaN(dk) ? dz : wKeep * dk + wGone * dz;
+                    remove(z, gone);
+                    keep(keep, z, d, MAX_EDGES);
+                    keep(z, keep, d, MAX_EDGES);
+                }
+                sizes[roots[keep]] += sizes[roots[gone]];
+                alive[gone] = false;
+                degree[gone] = 0;
+                version[keep]++;
+                remaining--;
+
+                for (int k = 0; k < degree[keep]; k++) {
+                    int z = targets[keep][k];
+                    if (alive[z]) {
+                        heap.push(weights[keep][k], keep, z, version[keep], version[z]);
+                    }
+                }
+            }
+
+            int[] left = new int[remaining];
+            for (int a = 0, k = 0; a < m; a++) {
+                if (alive[a]) {
+                    left[k++] = roots[a];
+                }
+            }
+            return left;
+        }
+    }
+
+    // Binary min-heap of edges with the vertex versions they were pushed at
+    private static class EdgeHeap {
+        private double[] distance = new double[64];
+        private int[] a = new int[64], b = new int[64], versionA = new int[64], versionB = new int[64];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        double topDistance() {
+            return distance[0];
+        }
+
+        int topA() {
+            return a[0];
+        }
+
+        int topB() {
+            return b[0];
+        }
+
+        int topVersionA() {
+            return versionA[0];
+        }
+
+        int topVersionB() {
+            return versionB[0];
+        }
+
+        void push(double d, int x, int y, int vx, int vy) {
+            if (size == distance.length) {
+                int capacity = 2 * size;
+                distance = Arrays.copyOf(distance, capacity);
+                a = Arrays.copyOf(a, capacity);
+                b = Arrays.copyOf(b, capacity);
+                versionA = Arrays.copyOf(versionA, capacity);
+                versionB = Arrays.copyOf(versionB, capacity);
+            }
+            int k = size++;
+            set(k, d, x, y, vx, vy);
+            while (k > 0 && less(k, (k - 1) / 2)) {
+                swap(k, (k - 1) / 2);
+                k = (k - 1) / 2;
+            }
+        }
+
+        void pop() {
+            size--;
+            set(0, distance[size], a[size], b[size], versionA[size], versionB[size]);
+            int k = 0;
+            while (true) {
+                int child = 2 * k + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && less(child + 1, child)) {
+                    child++;
+                }
+                if (!less(child, k)) {
+                    break;
+                }
+                swap(k, child);
+                k = child;
+            }
+        }
+
+        // Ties are broken by vertex so that runs are reproducible
+        private boolean less(int i, int j) {
+            if (distance[i] != distance[j]) {
+                return distance[i] < distance[j];
+            }
+            return a[i] != a[j] ? a[i] < a[j] : b[i] < b[j];
+        }
+
+        private void set(int k, double d, int x, int y, int vx, int vy) {
+            distance[k] = d;
+            a[k] = x;
+            b[k] = y;
+            versionA[k] = vx;
+            versionB[k] = vy;
+        }
+
+        private void swap(int i, int j) {
+            double d = distance[i];
+            int x = a[i], y = b[i], vx = versionA[i], vy = versionB[i];
+            set(i, distance[j], a[j], b[j], versionA[j], versionB[j]);
+            set(j, d, x, y, vx, vy);
+        }
+    }
+
+    // Runs body for every index of [from, to) on the pool
+    private static class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int GRAIN = 64;
+
+        private final int from, to;
+        private final java.util.function.IntConsumer body;
+
+        Range(int from, int to, java.util.function.IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                for (int i = from; i < to; i++) {
+                    body.accept(i);
+                }
+            }
+            else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Range(from, mid, body), new Range(mid, to, body));
+            }
+        }
+    }
+}
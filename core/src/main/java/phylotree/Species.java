@@ -0,0 +1,163 @@
+package phylotree;
+
+public class Species {
+    private String name;                  // A unique name associated with the species
+    private SequenceEncoding encoding;    // How the residues are packed into words
+    private int length;                   // Number of residues in the sequence
+    private long[] packed;                // The biological sequence describing this species
+
+    public Species(String name, String[] sequence) {
+        StringBuilder residues = new StringBuilder(sequence.length);
+        for (String s : sequence) {
+            residues.append(s);
+        }
+        if (residues.length() != sequence.length) {
+            throw new IllegalArgumentException("Each sequence element must be a single residue");
+        }
+
+        boolean[] present = new boolean[256];
+        SequenceEncoding enc = SequenceEncoding.markResidues(residues, present)
+                ? SequenceEncoding.narrowest(present) : null;
+        if (enc == null) {
+            throw new IllegalArgumentException("Sequence of " + name + " contains non single-byte residues");
+        }
+        init(name, residues, enc);
+    }
+
+    //  - residues can be represented by encoding (see SequenceEncoding.narrowest)
+    //  - Every species in an alignment should share one encoding so that
+    //    distances can be computed on the packed words directly
+    public Species(String name, CharSequence residues, SequenceEncoding encoding) {
+        init(name, residues, encoding);
+    }
+
+    //  - packed holds length residues packed with encoding, as laid out
+    //    in SequenceEncoding; it is used as is, not copied
+    Species(String name, SequenceEncoding encoding, int length, long[] packed) {
+        if (packed.length != encoding.wordsFor(length)) {
+            throw new IllegalArgumentException("Packed sequence of " + name + " does not hold " + length + " residues");
+        }
+        this.name = name;
+        this.encoding = encoding;
+        this.length = length;
+        this.packed = packed;
+    }
+
+    private void init(String name, CharSequence residues, SequenceEncoding encoding) {
+        this.name = name;
+        this.encoding = encoding;
+        this.length = residues.length();
+        this.packed = new long[encoding.wordsFor(length)];
+
+        int bits = encoding.bitsPerResidue();
+        int perWord = encoding.residuesPerWord();
+        for (int i = 0; i < length; i++) {
+            int code = encoding.encode(residues.charAt(i));
+            if (code < 0) {
+                throw new IllegalArgumentException("Residue '" + residues.charAt(i) + "' of " + name
+                                                   + " cannot be stored as " + encoding);
+            }
+            packed[i / perWord] |= ((long) code) << ((i % perWord) * bits);
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public SequenceEncoding getEncoding() {
+        return this.encoding;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public char residueAt(int i) {
+        return encoding.decode(code(i));
+    }
+
+    // The packed words backing this sequence; not to be modified
+    long[] words() {
+        return this.packed;
+    }
+
+    private int code(int i) {
+        int perWord = encoding.residuesPerWord();
+        return (int) ((packed[i / perWord] >>> ((i % perWord) * encoding.bitsPerResidue())) & encoding.laneMask());
+    }
+
+    //  Compatibility view of the sequence as one String per residue.
+    //  Decoded on every call, nothing is retained by the species.
+    public String[] getSequence() {
+        String[] sequence = new String[length];
+        for (int i = 0; i < length; i++) {
+            sequence[i] = String.valueOf(residueAt(i));
+        }
+        return sequence;
+    }
+
+    //  - a and b have the same length
+    //  - Returns the fraction of sequence elements
+    //    that are different
+    public static double distance(Species a, Species b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Sequences must already be aligned: " + a.name + ", " + b.name);
+        }
+
+        int numDiffs = 0;
+        if (a.encoding == b.encoding) {
+            numDiffs = HammingKernel.countDifferences(a.packed, b.packed, a.encoding.bitsPerResidue());
+        }
+        else {
+            for (int i = 0; i < a.length; i++) {
+                if (a.residueAt(i) != b.residueAt(i)) {
+                    numDiffs++;
+                }
+            }
+        }
+
+        return ((double) numDiffs) / a.length;
+    }
+
+    //  - a and b have the same length; weights has one weight per column
+    //  - Returns the weighted fraction of columns that are different
+    public static double distance(Species a, Species b, ColumnWeights weights) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Sequences must already be aligned: " + a.name + ", " + b.name);
+        }
+        if (weights.length() != a.length) {
+            throw new IllegalArgumentException("Need one weight per column: " + weights.length() + " weights, "
+                                               + a.length + " columns");
+        }
+
+        long weightedDiffs = 0;
+        if (a.encoding == b.encoding) {
+            // Words whose columns share one weight are popcounted; otherwise
+            // only the differing lanes are looked up
+            int bits = a.encoding.bitsPerResidue();
+            int perWord = a.encoding.residuesPerWord();
+            int[] uniform = weights.uniformWeights(bits);
+            for (int w = 0; w < a.packed.length; w++) {
+                long lanes = HammingKernel.differingLanes(a.packed[w] ^ b.packed[w], bits);
+                if (uniform[w] >= 0) {
+                    weightedDiffs += (long) uniform[w] * Long.bitCount(lanes);
+                    continue;
+                }
+                while (lanes != 0) {
+                    weightedDiffs += weights.weight(w * perWord + Long.numberOfTrailingZeros(lanes) / bits);
+                    lanes &= lanes - 1;
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < a.length; i++) {
+                if (a.residueAt(i) != b.residueAt(i)) {
+                    weightedDiffs += weights.weight(i);
+                }
+            }
+        }
+
+        return ((double) weightedDiffs) / weights.total();
+    }
+}
@@ -0,0 +1,213 @@
+package phylotree;
+
+/*
+ * Fills a SiteCounts for two aligned sequences in a single pass over
+ * their packed words (see HammingKernel for the lane folding).
+ *
+ * NUCLEOTIDE_2BIT codes A=00, C=01, G=10, T=11 differ only in the high
+ * bit for transitions (A/G, C/T) and in the low bit for transversions, so
+ * two masks of the XOR give both counts. NUCLEOTIDE_4BIT lanes are IUPAC
+ * bitmasks: a lane is unambiguous when exactly one bit is set (counted
+ * with a per-lane popcount), and purines are the bits A=1 and G=4.
+ * BYTE sequences and pairs of different encodings are compared one
+ * residue at a time.
+ *
+ * With ColumnWeights the same masks are computed, and the weights of the
+ * lanes set in them are summed instead of popcounted. Omitted constant
+ * columns (see SitePatterns) only add to the sites and compared counts.
+ */
+
+public class SubstitutionKernel {
+    private static final long LOW_BIT_OF_2 = 0x5555555555555555L;
+    private static final long LOW_BIT_OF_4 = 0x1111111111111111L;
+    private static final long LOW_TWO_BITS_OF_4 = 0x3333333333333333L;
+    private static final long PURINE_BITS_OF_4 = 0x5555555555555555L;   // A and G in every lane
+
+    private SubstitutionKernel() {
+    }
+
+    //  - a and b have the same length; weights is null, or holds one
+    //    weight per column
+    //  - Replaces the contents of counts with the tallies of a against b
+    public static void count(Species a, Species b, ColumnWeights weights, SiteCounts counts) {
+        if (a.getLength() != b.getLength()) {
+            throw new IllegalArgumentException("Sequences must already be aligned: " + a.getName() + ", "
+                                               + b.getName());
+        }
+        if (weights != null && weights.length() != a.getLength()) {
+            throw new IllegalArgumentException("Need one weight per column: " + weights.length() + " weights, "
+                                               + a.getLength() + " columns");
+        }
+        counts.clear();
+        counts.sites = weights == null ? a.getLength() : weights.total();
+        long constantExcluded = weights == null ? 0 : weights.constantExcluded();
+
+        if (a.getEncoding() != b.getEncoding() || a.getEncoding() == SequenceEncoding.BYTE) {
+            countResidues(a, b, weights, counts);
+            counts.compared += weights == null ? 0 : weights.constantCompared();
+        }
+        else if (a.getEncoding() == SequenceEncoding.NUCLEOTIDE_2BIT) {
+            count2(a.words(), b.words(), a.getLength(), weights, counts);
+            counts.compared -= constantExcluded;
+        }
+        else {
+            count4(a.words(), b.words(), a.getLength(), weights, counts);
+            counts.compared -= constantExcluded;
+        }
+    }
+
+    // Whether residue, stored with encoding, counts towards the compared
+    // columns: no gap and no ambiguity code
+    static boolean isCompared(SequenceEncoding encoding, char residue) {
+        switch (encoding) {
+            case NUCLEOTIDE_2BIT:
+                return true;
+            case NUCLEOTIDE_4BIT:
+                return Integer.bitCount(encoding.encode(residue)) == 1;
+            default:
+                return unambiguous(residue);
+        }
+    }
+
+    private static void count2(long[] a, long[] b, int length, ColumnWeights weights, SiteCounts counts) {
+        // Gap-free and unambiguous: every column is compared
+        long transitions = 0, transversions = 0;
+        for (int w = 0; w < a.length; w++) {
+            long x = a[w] ^ b[w];
+            long low = x & LOW_BIT_OF_2;
+            long high = (x >>> 1) & LOW_BIT_OF_2;
+            if (weights == null) {
+                transitions += Long.bitCount(high & ~low);
+                transversions += Long.bitCount(low);
+            }
+            else {
+                transitions += sum(high & ~low, w, 32, 2, weights);
+                transversions += sum(low, w, 32, 2, weights);
+            }
+        }
+        counts.differences = transitions + transversions;
+        counts.compared = counts.sites;
+        counts.comparedDifferences = counts.differences;
+        counts.transitions = transitions;
+        counts.transversions = transversions;
+    }
+
+    private static void count4(long[] a, long[] b, int length, ColumnWeights weights, SiteCounts counts) {
+        long differences = 0, excluded = 0, transitions = 0, transversions = 0;
+        long lastMask = length % 16 == 0 ? -1L : (1L << (4 * (length % 16))) - 1;
+        for (int w = 0; w < a.length; w++) {
+            long x = a[w], y = b[w];
+            long differ = HammingKernel.differingLanes(x ^ y, 4);
+            long compared = single(x) & single(y);
+            long classes = purine(x) ^ purine(y);
+            long inRange = (w == a.length - 1 ? lastMask : -1L) & LOW_BIT_OF_4;
+
+            if (weights == null) {
+                differences += Long.bitCount(differ);
+                excluded += Long.bitCount(inRange & ~compared);
+                transitions += Long.bitCount(compared & differ & ~classes);
+                transversions += Long.bitCount(compared & classes);
+            }
+            else {
+                differences += sum(differ, w, 16, 4, weights);
+                excluded += sum(inRange & ~compared, w, 16, 4, weights);
+                transitions += sum(compared & differ & ~classes, w, 16, 4, weights);
+                transversions += sum(compared & classes, w, 16, 4, weights);
+            }
+        }
+        counts.differences = differences;
+        counts.compared = counts.sites - excluded;
+        counts.comparedDifferences = transitions + transversions;
+        counts.transitions = transitions;
+        counts.transversions = transversions;
+    }
+
+    // Low bit of every lane holding exactly one base
+    private static long single(long x) {
+        long c = x - ((x >>> 1) & LOW_BIT_OF_2);
+        c = (c & LOW_TWO_BITS_OF_4) + ((c >>> 2) & LOW_TWO_BITS_OF_4);
+        return ~HammingKernel.differingLanes(c ^ LOW_BIT_OF_4, 4) & LOW_BIT_OF_4;
+    }
+
+    // Low bit of every lane containing a purine
+    private static long purine(long x) {
+        long p = x & PURINE_BITS_OF_4;
+        return (p | (p >>> 2)) & LOW_BIT_OF_4;
+    }
+
+    // Sum of the weights of the lanes whose low bit is set in lanes
+    private static long sum(long lanes, int word, int perWord, int bits, ColumnWeights weights) {
+        int uniform = weights.uniformWeights(bits)[word];
+        if (uniform >= 0) {
+            return (long) uniform * Long.bitCount(lanes);
+        }
+        long total = 0;
+        while (lanes != 0) {
+            total += weights.weight(word * perWord + Long.numberOfTrailingZeros(lanes) / bits);
+            lanes &= lanes - 1;
+        }
+        return total;
+    }
+
+    private static void countResidues(Species a, Species b, ColumnWeights weights, SiteCounts counts) {
+        for (int i = 0; i < a.getLength(); i++) {
+            long weight = weights == null ? 1 : weights.weight(i);
+            if (weight == 0) {
+                continue;
+            }
+            char r = a.residueAt(i);
+            char s = b.residueAt(i);
+            if (r != s) {
+                counts.differences += weight;
+            }
+            if (!unambiguous(r) || !unambiguous(s)) {
+                continue;
+            }
+            counts.compared += weight;
+            if (Character.toUpperCase(r) == Character.toUpperCase(s)) {
+                continue;
+            }
+            counts.comparedDifferences += weight;
+            int p = nucleotideClass(r);
+            int q = nucleotideClass(s);
+            if (p >= 0 && q >= 0) {
+                if (p == q) {
+                    counts.transitions += weight;
+                }
+                else {
+                    counts.transversions += weight;
+                }
+            }
+        }
+    }
+
+    // Gaps and unknown residues. N is an amino acid as well as a nucleotide
+    // ambiguity code, so it only counts as ambiguous in packed sequences
+    private static boolean unambiguous(char residue) {
+        switch (Character.toUpperCase(residue)) {
+            case '-':
+            case '.':
+            case '?':
+            case '*':
+            case 'X':
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    // 0 for purines, 1 for pyrimidines, -1 for anything else
+    private static int nucleotideClass(char residue) {
+        switch (Character.toUpperCase(residue)) {
+            case 'A':
+            case 'G':
+                return 0;
+            case 'C':
+            case 'T':
+            case 'U':
+                return 1;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package phylotree;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/*
+ * Per-node summaries of a tree, recorded as the tree is assembled so that
+ * none of them needs a traversal later:
+ *
+ *   height           edges on the longest path down to a leaf
+ *   weighted height  largest sum of branch lengths down to a leaf
+ *   leaf count       number of species in the subtree
+ *   leaf range       [leafStart, leafStart + leafCount) of the subtree's
+ *                    species in the left-to-right order of the whole tree
+ *
+ * Height, weighted height and leaf count are filled in by addLeaf and
+ * addMerge; leaf ranges and the species order are assigned by finish,
+ * once the root is known.
+ *
+ * Leaf ranges are the pre/post-order intervals of the tree: a node's
+ * range contains another's exactly when it is that node or one of its
+ * ancestors, and every internal node's range is strictly larger than its
+ * children's, so ancestry is two comparisons.
+ */
+
+public class SubtreeAggregates {
+    private final IdentityHashMap<PhyloTreeNode,Integer> ids;
+    private int[] height;
+    private double[] weightedHeight;
+    private int[] leafCount;
+    private int[] leafStart;
+    private int count;
+
+    private Species[] leaves;
+    private List<Species> leafView;
+
+    //  - expectedNodes is a hint of how many nodes will be added
+    public SubtreeAggregates(int expectedNodes) {
+        int capacity = Math.max(1, expectedNodes);
+        this.ids = new IdentityHashMap<PhyloTreeNode,Integer>(2 * capacity);
+        this.height = new int[capacity];
+        this.weightedHeight = new double[capacity];
+        this.leafCount = new int[capacity];
+    }
+
+    //  Records the aggregates of every node of an already linked tree
+    public static SubtreeAggregates of(PhyloTreeNode root) {
+        SubtreeAggregates aggregates = new SubtreeAggregates(2 * root.getNumLeafs() - 1);
+
+        // Post-order without recursion: children are recorded before parents
+        java.util.ArrayDeque<PhyloTreeNode> pending = new java.util.ArrayDeque<PhyloTreeNode>();
+        java.util.ArrayList<PhyloTreeNode> order = new java.util.ArrayList<PhyloTreeNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            PhyloTreeNode node = pending.pop();
+            order.add(node);
+            if (!node.isLeaf()) {
+                pending.push(node.getLeftChild());
+                pending.push(node.getRightChild());
+            }
+        }
+        for (int i = order.size() - 1; i >= 0; i--) {
+            PhyloTreeNode node = order.get(i);
+            if (node.isLeaf()) {
+                aggregates.addLeaf(node);
+            }
+            else {
+                aggregates.addMerge(node);
+            }
+        }
+        aggregates.finish(root);
+        return aggregates;
+    }
+
+    public void addLeaf(PhyloTreeNode leaf) {
+        int id = add(leaf);
+        height[id] = 0;
+        weightedHeight[id] = 0.0;
+        leafCount[id] = 1;
+    }
+
+    //  - Both children of parent have already been added
+    public void addMerge(PhyloTreeNode parent) {
+        int left = id(parent.getLeftChild());
+        int right = id(parent.getRightChild());
+        int id = add(parent);
+
+        height[id] = 1 + (height[left] >= height[right] ? height[left] : height[right]);
+        double l = weightedHeight[left] + parent.getDistanceToChild();
+        double r = weightedHeight[right] + parent.getDistanceToChild();
+        weightedHeight[id] = (l >= r ? l : r);
+        leafCount[id] = leafCount[left] + leafCount[right];
+    }
+
+    //  Assigns leaf ranges below root, left subtree first
+    public void finish(PhyloTreeNode root) {
+        leafStart = new int[count];
+        leaves = new Species[leafCount[id(root)]];
+
+        java.util.ArrayDeque<PhyloTreeNode> pending = new java.util.ArrayDeque<PhyloTreeNode>();
+        pending.push(root);
+        leafStart[id(root)] = 0;
+        while (!pending.isEmpty()) {
+            PhyloTreeNode node = pending.pop();
+            int id = id(node);
+            if (node.isLeaf()) {
+                leaves[leafStart[id]] = node.getSpecies();
+            }
+            else {
+                int left = id(node.getLeftChild());
+                int right = id(node.getRightChild());
+                leafStart[left] = leafStart[id];
+                leafStart[right] = leafStart[id] + leafCount[left];
+                pending.push(node.getRightChild());
+                pending.push(node.getLeftChild());
+            }
+        }
+        leafView = Collections.unmodifiableList(Arrays.asList(leaves));
+    }
+
+    public int height(PhyloTreeNode node) {
+        return height[id(node)];
+    }
+
+    public double weightedHeight(PhyloTreeNode node) {
+        return weightedHeight[id(node)];
+    }
+
+    public int leafCount(PhyloTreeNode node) {
+        return leafCount[id(node)];
+    }
+
+    public int leafStart(PhyloTreeNode node) {
+        return leafStart[id(node)];
+    }
+
+    //  - Both nodes belong to the finished tree
+    //  - Whether node is ancestor or lies below it
+    public boolean isWithin(PhyloTreeNode node, PhyloTreeNode ancestor) {
+        int n = id(node);
+        int a = id(ancestor);
+        return leafStart[a] <= leafStart[n] && leafStart[n] + leafCount[n] <= leafStart[a] + leafCount[a];
+    }
+
+    //  All species in left-to-right order, as an unmodifiable view
+    public List<Species> leaves() {
+        return leafView;
+    }
+
+    public boolean contains(PhyloTreeNode node) {
+        return ids.containsKey(node);
+    }
+
+    private int id(PhyloTreeNode node) {
+        Integer id = ids.get(node);
+        if (id == null) {
+            throw new IllegalArgumentException("Node " + node + " has no aggregates");
+        }
+        return id;
+    }
+
+    private int add(PhyloTreeNode node) {
+        if (count == height.length) {
+            int capacity = count * 2;
+            height = Arrays.copyOf(height, capacity);
+            weightedHeight = Arrays.copyOf(weightedHeight, capacity);
+            leafCount = Arrays.copyOf(leafCount, capacity);
+        }
+        ids.put(node, count);
+        return count++;
+    }
+}
@@ -0,0 +1,415 @@
+package phylotree;
+
+/*
+ * Serves queries on already built trees over HTTP, so that other tools
+ * do not have to rebuild trees or parse .distances files.
+ *
+ * ----------------------------------------------------------------------------
+ *
+ * usage:
+ *
+ * java -cp core/target/phylotree-1.0-SNAPSHOT.jar phylotree.TreeServer
+ *     [-port n] [-bind address] [-reload seconds] [name=]file ...
+ *
+ * where
+ *
+ *   file                   a FASTA alignment, or a snapshot written by
+ *                          PhyloTree.writeSnapshot; served as name, or as
+ *                          the file's name if no name is given
+ *   -port n                port to listen on (default: 8080)
+ *   -bind address          address to listen on (default: loopback only)
+ *   -reload seconds        how often files are checked for changes; changed
+ *                          files are reloaded in the background and replace
+ *                          their tree once built (default: 10, 0 disables)
+ *
+ * ----------------------------------------------------------------------------
+ *
+ * Requests and responses are UTF-8 text, one query per line, with the
+ * fields of a line separated by tabs. POST any number of lines to answer
+ * a whole batch in one round trip; GET answers a single query given as
+ * parameters a and b (or label). Labels that are not in the tree give
+ * "-".
+ *
+ *   GET  /trees                    name, species count
+ *   POST /trees/name/distance      label1, label2  ->  evolutionary distance
+ *   POST /trees/name/lca           label1, label2  ->  least common ancestor label
+ *   POST /trees/name/node          label  ->  label, species count, parent label
+ *   POST /trees/name/species       label  ->  the species below label
+ *   POST /trees/name/clade         label, clade label  ->  true if label is in
+ *                                  the clade, false if not
+ *
+ * Requests run on virtual threads where the runtime has them (Java 21
+ * and later), and on a cached thread pool otherwise.
+*/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class TreeServer {
+    private static final int PRINTING_DEPTH = 100;
+    private static final int MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+    private static final String NOT_FOUND = "-";
+
+    private final HttpServer server;
+    private final ExecutorService requests;
+    private final ScheduledExecutorService reloader;
+    private final BuildOptions options;
+    private final Map<String,Source> trees = new ConcurrentHashMap<String,Source>();
+
+    //  - options are used to build the trees of FASTA files
+    public TreeServer(InetSocketAddress address, BuildOptions options) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(address, 0);
+        this.requests = newRequestExecutor();
+        this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tree-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(requests);
+        server.createContext("/", this::handle);
+    }
+
+    //  Loads file (see usage) and serves its tree as name
+    public void addTree(String name, Path file) throws IOException {
+        Source source = new Source(file);
+        source.load();
+        trees.put(name, source);
+    }
+
+    //  - reloadSeconds > 0 checks the files for changes that often
+    public void start(long reloadSeconds) {
+        if (reloadSeconds > 0) {
+            reloader.scheduleWithFixedDelay(this::reloadChanged, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+        }
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        reloader.shutdownNow();
+        requests.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    // Virtual threads if this runtime has them
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Reloads every changed file; a file that fails to load leaves its
+    // tree in place. Run by the reloader, and directly by tests.
+    void reloadChanged() {
+        for (Map.Entry<String,Source> entry : trees.entrySet()) {
+            try {
+                if (entry.getValue().changed()) {
+                    entry.getValue().load();
+                    System.err.println("Reloaded " + entry.getKey() + " from " + entry.getValue().file);
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                System.err.println("Error: Unable to reload " + entry.getKey() + ", still serving the old tree: " + e);
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("POST")) {
+                respond(exchange, 405, "Only GET and POST are supported\n");
+                return;
+            }
+
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            if (path.length == 2 && path[1].equals("trees")) {
+                StringBuilder out = new StringBuilder();
+                for (Map.Entry<String,Source> entry : trees.entrySet()) {
+                    out.append(entry.getKey()).append('\t').append(entry.getValue().tree.countAllSpecies()).append('\n');
+                }
+                respond(exchange, 200, out.toString());
+                return;
+            }
+            Source source = path.length == 4 && path[1].equals("trees") ? trees.get(path[2]) : null;
+            if (source == null) {
+                respond(exchange, 404, "No such tree or query\n");
+                return;
+            }
+
+            List<String[]> queries;
+            if (method.equals("GET")) {
+                Map<String,String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+                queries = new ArrayList<String[]>();
+                queries.add(parameters.containsKey("label") ? new String[] {parameters.get("label")}
+                            : new String[] {parameters.get("a"), parameters.get("b")});
+            }
+            else {
+                queries = lines(exchange.getRequestBody());
+                if (queries == null) {
+                    respond(exchange, 413, "Request larger than " + MAX_REQUEST_BYTES + " bytes\n");
+                    return;
+                }
+            }
+
+            String response = answer(source.tree, path[3], queries);
+            if (response == null) {
+                respond(exchange, 404, "No such query: " + path[3] + "\n");
+            }
+            else {
+                respond(exchange, 200, response);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    // Null for an unknown query
+    private static String answer(PhyloTree tree, String query, List<String[]> queries) {
+        StringBuilder out = new StringBuilder(16 * queries.size());
+        if (query.equals("clade")) {
+            String[] labels = new String[queries.size()];
+            String[] clades = new String[queries.size()];
+            for (int k = 0; k < labels.length; k++) {
+                String[] pair = pair(queries.get(k));
+                labels[k] = pair[0];
+                clades[k] = pair[1];
+            }
+            boolean[] within = tree.isInClade(labels, clades);
+            for (int k = 0; k < within.length; k++) {
+                boolean known = tree.findTreeNodeByLabel(labels[k]) != null
+                                && tree.findTreeNodeByLabel(clades[k]) != null;
+                out.append(known ? String.valueOf(within[k]) : NOT_FOUND).append('\n');
+            }
+            return out.toString();
+        }
+        for (String[] q : queries) {
+            switch (query) {
+                case "distance": {
+                    String[] pair = pair(q);
+                    if (tree.findTreeNodeByLabel(pair[0]) == null || tree.findTreeNodeByLabel(pair[1]) == null) {
+                        out.append(NOT_FOUND);
+                    }
+                    else {
+                        out.append(tree.findEvolutionaryDistance(pair[0], pair[1]));
+                    }
+                    break;
+                }
+                case "lca": {
+                    String[] pair = pair(q);
+                    PhyloTreeNode lca = tree.findTreeNodeByLabel(pair[0]) == null
+                                        || tree.findTreeNodeByLabel(pair[1]) == null
+                                        ? null : tree.findLeastCommonAncestor(pair[0], pair[1]);
+                    out.append(lca == null ? NOT_FOUND : lca.getLabel());
+                    break;
+                }
+                case "node": {
+                    PhyloTreeNode node = tree.findTreeNodeByLabel(label(q));
+                    if (node == null) {
+                        out.append(NOT_FOUND);
+                    }
+                    else {
+                        out.append(node.getLabel()).append('\t').append(node.getNumLeafs()).append('\t')
+                           .append(node.getParent() == null ? NOT_FOUND : node.getParent().getLabel());
+                    }
+                    break;
+                }
+                case "species": {
+                    List<Species> species = tree.getSubtreeSpecies(label(q));
+                    if (species == null) {
+                        out.append(NOT_FOUND);
+                    }
+                    else {
+                        for (int k = 0; k < species.size(); k++) {
+                            out.append(k == 0 ? "" : "\t").append(species.get(k).getName());
+                        }
+                    }
+                    break;
+                }
+                default:
+                    return null;
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String[] pair(String[] query) {
+        if (query.length != 2 || query[0] == null || query[1] == null) {
+            throw new IllegalArgumentException("Expected two tab-separated labels per line");
+        }
+        return query;
+    }
+
+    private static String label(String[] query) {
+        if (query.length != 1 || query[0] == null) {
+            throw new IllegalArgumentException("Expected one label per line");
+        }
+        return query[0];
+    }
+
+    // Non-empty lines of body split at tabs; null if body is too large
+    private static List<String[]> lines(InputStream body) throws IOException {
+        byte[] bytes = body.readNBytes(MAX_REQUEST_BYTES + 1);
+        if (bytes.length > MAX_REQUEST_BYTES) {
+            return null;
+        }
+        List<String[]> lines = new ArrayList<String[]>();
+        for (String line : new String(bytes, StandardCharsets.UTF_8).split("\r?\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line.split("\t", -1));
+            }
+        }
+        return lines;
+    }
+
+    private static Map<String,String> parameters(String rawQuery) {
+        Map<String,String> parameters = new HashMap<String,String>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                                   URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // A served tree and the file it was loaded from
+    private class Source {
+        final Path file;
+        volatile PhyloTree tree;
+        FileTime modified;
+        long size;
+
+        Source(Path file) {
+            this.file = file;
+        }
+
+        boolean changed() throws IOException {
+            return !Files.getLastModifiedTime(file).equals(modified) || Files.size(file) != size;
+        }
+
+        // The new tree replaces the old one only once it is complete
+        void load() throws IOException {
+            FileTime modified = Files.getLastModifiedTime(file);
+            long size = Files.size(file);
+            this.tree = isSnapshot(file) ? PhyloTree.openSnapshot(file)
+                        : new PhyloTree(file.toString(), PRINTING_DEPTH, options);
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+    private static boolean isSnapshot(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = in.readNBytes(4);
+            return new String(magic, StandardCharsets.ISO_8859_1).equals("PHYT");
+        }
+    }
+
+    public static void main(String[] args) {
+        int port = 8080;
+        InetAddress bind = InetAddress.getLoopbackAddress();
+        long reloadSeconds = 10;
+
+        int arg = 0;
+        try {
+            for (; arg < args.length && args[arg].startsWith("-"); arg += 2) {
+                if (arg + 1 >= args.length) {
+                    throw new IllegalArgumentException();
+                }
+                else if (args[arg].equals("-port")) {
+                    port = Integer.parseInt(args[arg + 1]);
+                }
+                else if (args[arg].equals("-bind")) {
+                    bind = InetAddress.getByName(args[arg + 1]);
+                }
+                else if (args[arg].equals("-reload")) {
+                    reloadSeconds = Long.parseLong(args[arg + 1]);
+                }
+                else {
+                    throw new IllegalArgumentException();
+                }
+            }
+        }
+        catch (IllegalArgumentException | IOException e) {
+            System.err.println("Error: Bad option " + args[arg]);
+            System.exit(2);
+        }
+
+        if (arg == args.length) {
+            System.err.println("Error: Need at least one FASTA or snapshot file to serve.");
+            System.exit(2);
+        }
+
+        TreeServer server = null;
+        try {
+            server = new TreeServer(new InetSocketAddress(bind, port), new BuildOptions());
+        }
+        catch (IOException e) {
+            System.err.println("Error: Unable to listen on " + bind + ":" + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+
+        for (; arg < args.length; arg++) {
+            int equals = args[arg].indexOf('=');
+            Path file = Paths.get(equals < 0 ? args[arg] : args[arg].substring(equals + 1));
+            String name = equals < 0 ? file.getFileName().toString() : args[arg].substring(0, equals);
+            try {
+                server.addTree(name, file);
+            }
+            catch (IOException e) {
+                System.err.println("Error: Unable to load " + file + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        server.start(reloadSeconds);
+        System.err.println("Serving " + server.trees.size() + " trees on http://"
+                           + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+}
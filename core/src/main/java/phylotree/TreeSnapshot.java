@@ -0,0 +1,322 @@
+package phylotree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.zip.CRC32C;
+
+/*
+ * Compact binary image of a built PhyloTree that can be reopened without
+ * the FASTA file or any distance computation.
+ *
+ * Layout (big-endian):
+ *
+ *   header   "PHYT", int version, int flags, int printing depth,
+ *            int node count, int leaf count, long payload length,
+ *            long CRC32C of the payload
+ *   payload  nodes in post-order (children before parents), per node:
+ *              int left child, int right child (-1 for leaves),
+ *              double distance to child
+ *            labels, per node: int length and UTF-8 bytes; -1 for an
+ *              internal node labelled "left+right" as buildTree does
+ *            species, per leaf in node order: byte encoding, int length,
+ *              the packed words
+ *            with FLAG_LCA_INDEX: the LCA index arrays (node of every
+ *              index id, weighted depths, first visits, Euler tour,
+ *              levels and sparse table rows)
+ *
+ * Snapshots are read through a single read-only mapping, so they are
+ * limited to 2 GB.
+ */
+
+public class TreeSnapshot {
+    private static final int MAGIC = ('P' << 24) | ('H' << 16) | ('Y' << 8) | 'T';
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * 6 + 8 * 2;
+    private static final int FLAG_LCA_INDEX = 1;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private TreeSnapshot() {
+    }
+
+    //  - root and everything below it is written; withLcaIndex also saves
+    //    the given index so that reopening does not have to rebuild it
+    static void write(PhyloTreeNode root, int printingDepth, LcaIndex lcaIndex, Path file) throws IOException {
+        // Number the nodes in post-order
+        ArrayList<PhyloTreeNode> order = new ArrayList<PhyloTreeNode>();
+        ArrayDeque<PhyloTreeNode> pending = new ArrayDeque<PhyloTreeNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            PhyloTreeNode node = pending.pop();
+            order.add(node);
+            if (!node.isLeaf()) {
+                pending.push(node.getLeftChild());
+                pending.push(node.getRightChild());
+            }
+        }
+        Collections.reverse(order);
+        IdentityHashMap<PhyloTreeNode,Integer> ids = new IdentityHashMap<PhyloTreeNode,Integer>(2 * order.size());
+        int leafCount = 0;
+        for (int id = 0; id < order.size(); id++) {
+            ids.put(order.get(id), id);
+            if (order.get(id).isLeaf()) {
+                leafCount++;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel, HEADER_BYTES);
+
+            for (PhyloTreeNode node : order) {
+                out.ensure(16);
+                out.buffer.putInt(node.isLeaf() ? -1 : ids.get(node.getLeftChild()));
+                out.buffer.putInt(node.isLeaf() ? -1 : ids.get(node.getRightChild()));
+                out.buffer.putDouble(node.getDistanceToChild());
+            }
+
+            for (PhyloTreeNode node : order) {
+                if (!node.isLeaf() && node.getLabel().equals(derivedLabel(node))) {
+                    out.ensure(4);
+                    out.buffer.putInt(-1);
+                }
+                else {
+                    out.putBytes(node.getLabel().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            for (PhyloTreeNode node : order) {
+                if (node.isLeaf()) {
+                    Species species = node.getSpecies();
+                    long[] words = species.words();
+                    out.ensure(5);
+                    out.buffer.put((byte) species.getEncoding().ordinal());
+                    out.buffer.putInt(species.getLength());
+                    for (long word : words) {
+                        out.ensure(8);
+                        out.buffer.putLong(word);
+                    }
+                }
+            }
+
+            if (lcaIndex != null) {
+                PhyloTreeNode[] lcaNodes = lcaIndex.nodes();
+                int[] lcaToSnapshot = new int[lcaNodes.length];
+                for (int i = 0; i < lcaNodes.length; i++) {
+                    lcaToSnapshot[i] = ids.get(lcaNodes[i]);
+                }
+                out.putInts(lcaToSnapshot);
+                double[] depths = lcaIndex.weightedDepths();
+                for (double depth : depths) {
+                    out.ensure(8);
+                    out.buffer.putDouble(depth);
+                }
+                out.putInts(lcaIndex.first());
+                out.putInts(lcaIndex.tour());
+                out.putInts(lcaIndex.level());
+                int[][] sparse = lcaIndex.sparse();
+                out.ensure(4);
+                out.buffer.putInt(sparse.length);
+                for (int[] row : sparse) {
+                    out.putInts(row);
+                }
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(lcaIndex != null ? FLAG_LCA_INDEX : 0);
+            header.putInt(printingDepth).putInt(order.size()).putInt(leafCount);
+            header.putLong(out.payloadBytes).putLong(out.checksum.getValue());
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+    }
+
+    //  Reopens a snapshot written by write(). Throws IOException if the
+    //  file is not a snapshot, has an unsupported version, or is corrupt.
+    static PhyloTree read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException(file + " is not a tree snapshot");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a tree snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported snapshot version " + version);
+            }
+            int flags = buffer.getInt();
+            int printingDepth = buffer.getInt();
+            int nodeCount = buffer.getInt();
+            buffer.getInt();    // Leaf count, implied by the node table
+            long payloadBytes = buffer.getLong();
+            long checksum = buffer.getLong();
+            if (payloadBytes != size - HEADER_BYTES || nodeCount < 1) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+
+            CRC32C crc = new CRC32C();
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(HEADER_BYTES);
+            crc.update(payload);
+            if (crc.getValue() != checksum) {
+                throw new IOException(file + " failed its checksum");
+            }
+
+            try {
+                return read(buffer, flags, printingDepth, nodeCount);
+            }
+            catch (RuntimeException e) {
+                // Only reachable if the file was written by a broken writer
+                throw new IOException(file + " is corrupt: " + e, e);
+            }
+        }
+    }
+
+    private static PhyloTree read(ByteBuffer buffer, int flags, int printingDepth, int nodeCount) {
+        int[] left = new int[nodeCount];
+        int[] right = new int[nodeCount];
+        double[] distance = new double[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            left[id] = buffer.getInt();
+            right[id] = buffer.getInt();
+            distance[id] = buffer.getDouble();
+        }
+
+        String[] labels = new String[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            int length = buffer.getInt();
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                labels[id] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        // Children precede their parents, so one forward pass links the tree
+        SequenceEncoding[] encodings = SequenceEncoding.values();
+        PhyloTreeNode[] nodes = new PhyloTreeNode[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            if (left[id] < 0) {
+                SequenceEncoding encoding = encodings[buffer.get()];
+                int length = buffer.getInt();
+                long[] words = new long[encoding.wordsFor(length)];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + 8 * words.length);
+                nodes[id] = new PhyloTreeNode(null, new Species(labels[id], encoding, length, words));
+            }
+            else {
+                PhyloTreeNode l = nodes[left[id]];
+                PhyloTreeNode r = nodes[right[id]];
+                String label = labels[id] != null ? labels[id] : l.getLabel() + "+" + r.getLabel();
+                nodes[id] = new PhyloTreeNode(label, null, l, r, distance[id]);
+                l.setParent(nodes[id]);
+                r.setParent(nodes[id]);
+            }
+        }
+        PhyloTreeNode root = nodes[nodeCount - 1];
+
+        LcaIndex lcaIndex = null;
+        if ((flags & FLAG_LCA_INDEX) != 0) {
+            int[] lcaToSnapshot = getInts(buffer, nodeCount);
+            PhyloTreeNode[] lcaNodes = new PhyloTreeNode[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                lcaNodes[i] = nodes[lcaToSnapshot[i]];
+            }
+            double[] depths = new double[nodeCount];
+            buffer.asDoubleBuffer().get(depths);
+            buffer.position(buffer.position() + 8 * nodeCount);
+            int[] first = getInts(buffer, nodeCount);
+            int tourLength = Math.max(1, 2 * nodeCount - 1);
+            int[] tour = getInts(buffer, tourLength);
+            int[] level = getInts(buffer, tourLength);
+            int[][] sparse = new int[buffer.getInt()][];
+            for (int k = 0; k < sparse.length; k++) {
+                sparse[k] = getInts(buffer, tourLength - (1 << k) + 1);
+            }
+            lcaIndex = new LcaIndex(lcaNodes, depths, first, tour, level, sparse);
+        }
+
+        return new PhyloTree(root, printingDepth, lcaIndex);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+
+    // Internal labels as built by buildTree: the children's joined by '+'
+    private static String derivedLabel(PhyloTreeNode node) {
+        return node.getLeftChild().getLabel() + "+" + node.getRightChild().getLabel();
+    }
+
+    // Buffered payload writer that checksums everything it writes
+    private static class Output {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        final CRC32C checksum = new CRC32C();
+        long position;
+        long payloadBytes;
+
+        Output(FileChannel channel, long start) {
+            this.channel = channel;
+            this.position = start;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            ensure(4);
+            buffer.putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int value : values) {
+                ensure(4);
+                buffer.putInt(value);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                int written = channel.write(buffer, position);
+                position += written;
+                payloadBytes += written;
+            }
+            buffer.clear();
+        }
+    }
+}
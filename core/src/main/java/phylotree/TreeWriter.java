@@ -0,0 +1,134 @@
+package phylotree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/*
+ * Streams the text forms of a tree into a Writer without recursion:
+ *
+ *   writeIndented   one line per node in reverse in-order (right subtree,
+ *                   node, left subtree), indented with dots in proportion
+ *                   to the node's weighted depth; PhyloTree.toString()
+ *   writeNewick     Newick with five-decimal branch lengths, children in
+ *                   right-left order; PhyloTree.toTreeString()
+ *
+ * Weighted depths are carried down the explicit stack instead of being
+ * recomputed from the root for every node (except for the few nodes whose
+ * indentation sits on an integer boundary), and branch lengths go through
+ * a FixedDecimalFormat, so the cost is linear in the size of the output.
+ */
+
+public class TreeWriter {
+    private PhyloTreeNode[] nodes = new PhyloTreeNode[64];
+    private double[] depths = new double[64];
+    private int[] states = new int[64];
+    private int top;
+
+    private final StringBuilder line = new StringBuilder();
+
+    //  - printingDepth is the number of dots before the deepest node
+    //  - maxDepth is the weighted height of the tree
+    public void writeIndented(PhyloTreeNode root, int printingDepth, double maxDepth, Writer out) throws IOException {
+        top = 0;
+        push(root, 0.0);
+
+        while (top > 0) {
+            int t = top - 1;
+            PhyloTreeNode node = nodes[t];
+            double depth = depths[t];
+
+            if (states[t] == 0) {
+                states[t] = 1;
+                if (node.getRightChild() != null) {
+                    push(node.getRightChild(), depth + node.getDistanceToChild());
+                    continue;
+                }
+            }
+
+            // Right subtree done: print this node, then replace it on the
+            // stack by its left subtree
+            line.setLength(0);
+            double k = (double) printingDepth * (depth / maxDepth);
+            if (Math.abs(k - Math.rint(k)) < 1e-6) {
+                // The dot count changes at integers, where rounding matters:
+                // use the depth summed leaf-to-root as the original printer did
+                k = (double) printingDepth * (PhyloTree.weightedNodeDepth(node) / maxDepth);
+            }
+            for (int i = 0; i < k; i++) {
+                line.append('.');
+            }
+            line.append(node.toString()).append('\n');
+            out.append(line);
+
+            top--;
+            if (node.getLeftChild() != null) {
+                push(node.getLeftChild(), depth + node.getDistanceToChild());
+            }
+        }
+    }
+
+    public void writeNewick(PhyloTreeNode root, Writer out) throws IOException {
+        writeNewick(root, null, out);
+    }
+
+    //  - supports, if not null, maps internal nodes to a support value
+    //    written after their closing parenthesis (see PhyloTree.bootstrap)
+    public void writeNewick(PhyloTreeNode root, Map<PhyloTreeNode,Integer> supports, Writer out)
+            throws IOException {
+        FixedDecimalFormat formatter = new FixedDecimalFormat(5);
+        top = 0;
+        push(root, 0.0);
+
+        while (top > 0) {
+            int t = top - 1;
+            PhyloTreeNode node = nodes[t];
+            line.setLength(0);
+
+            if (node.isLeaf()) {
+                line.append(node.toString());
+                appendBranch(node, root, formatter);
+                top--;
+            }
+            else if (states[t] == 0) {
+                line.append('(');
+                states[t] = 1;
+                push(node.getRightChild(), 0.0);
+            }
+            else if (states[t] == 1) {
+                line.append(',');
+                states[t] = 2;
+                push(node.getLeftChild(), 0.0);
+            }
+            else {
+                line.append(')');
+                Integer support = supports == null ? null : supports.get(node);
+                if (support != null) {
+                    line.append(support.intValue());
+                }
+                appendBranch(node, root, formatter);
+                top--;
+            }
+            out.append(line);
+        }
+    }
+
+    private void appendBranch(PhyloTreeNode node, PhyloTreeNode root, FixedDecimalFormat formatter) {
+        if (node != root) {
+            line.append(':');
+            formatter.format(node.getParent().getDistanceToChild(), line);
+        }
+    }
+
+    private void push(PhyloTreeNode node, double depth) {
+        if (top == nodes.length) {
+            nodes = java.util.Arrays.copyOf(nodes, top * 2);
+            depths = java.util.Arrays.copyOf(depths, top * 2);
+            states = java.util.Arrays.copyOf(states, top * 2);
+        }
+        nodes[top] = node;
+        depths[top] = depth;
+        states[top] = 0;
+        top++;
+    }
+}
@@ -0,0 +1,59 @@
+package phylotree;
+
+import java.util.Random;
+
+// Seeded random alignments for tests
+final class Alignments {
+    private Alignments() {
+    }
+
+    //  size 2-bit nucleotide sequences of length residues: each after the
+    //  first copies a random earlier one with about rate of its sites
+    //  mutated, so distances are tree-like and rarely tied
+    static Species[] tree(int size, int length, double rate, long seed) {
+        return tree(size, length, rate, "ACGT", SequenceEncoding.NUCLEOTIDE_2BIT, seed);
+    }
+
+    //  As tree, drawing residues from alphabet and packing them with
+    //  encoding
+    static Species[] tree(int size, int length, double rate, String alphabet, SequenceEncoding encoding,
+                          long seed) {
+        Random random = new Random(seed);
+        char[][] sequences = new char[size][];
+        Species[] species = new Species[size];
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                sequences[i] = new char[length];
+                for (int k = 0; k < length; k++) {
+                    sequences[i][k] = alphabet.charAt(random.nextInt(alphabet.length()));
+                }
+            }
+            else {
+                sequences[i] = sequences[random.nextInt(i)].clone();
+                for (int k = 0; k < length; k++) {
+                    if (random.nextDouble() < rate) {
+                        sequences[i][k] = alphabet.charAt(random.nextInt(alphabet.length()));
+                    }
+                }
+            }
+            species[i] = new Species(String.format("s%03d", i), new String(sequences[i]), encoding);
+        }
+        return species;
+    }
+
+    //  size sequences over a two-letter alphabet, short enough that many
+    //  distances are tied
+    static Species[] ties(int size, int length, long seed) {
+        Random random = new Random(seed);
+        Species[] species = new Species[size];
+        for (int i = 0; i < size; i++) {
+            char[] sequence = new char[length];
+            for (int k = 0; k < length; k++) {
+                sequence[k] = random.nextBoolean() ? 'A' : 'C';
+            }
+            species[i] = new Species(String.format("s%03d", i), new String(sequence),
+                                     SequenceEncoding.NUCLEOTIDE_2BIT);
+        }
+        return species;
+    }
+}
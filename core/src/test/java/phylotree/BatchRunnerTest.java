@@ -0,0 +1,99 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchRunnerTest {
+    private static final String ALIGNED = ">x|a\nACGTACGT\n>x|b\nACGTACGA\n>x|c\nTCGTTCGA\n";
+    private static final String UNALIGNED = ">x|a\nACGTACGT\n>x|b\nACGTA\n>x|c\nTCGTTCGA\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unalignedFileIsReportedAndLaterFilesAreWritten() throws IOException {
+        Path bad = write("bad.fasta", UNALIGNED);
+        Path good = write("good.fasta", ALIGNED);
+        Path out = Files.createDirectory(dir.resolve("out"));
+
+        String errors = run(new BatchRunner(out.toString(), 100, 1, Long.MAX_VALUE,
+                                            DistanceMatrixWriter.Format.TEXT),
+                            bad, good);
+
+        assertTrue(errors.contains("Error: Unable to parse file " + bad), errors);
+        assertFalse(Files.exists(out.resolve("bad.fasta.tree")));
+        assertTrue(Files.exists(out.resolve("good.fasta.tree")));
+        assertTrue(Files.exists(out.resolve("good.fasta.distances")));
+    }
+
+    @Test
+    void unalignedFileDoesNotStopConcurrentAlignments() throws IOException {
+        Path out = Files.createDirectory(dir.resolve("out"));
+        Path[] files = new Path[6];
+        for (int k = 0; k < files.length; k++) {
+            files[k] = write("f" + k + ".fasta", k == 2 ? UNALIGNED : ALIGNED);
+        }
+
+        String errors = run(new BatchRunner(out.toString(), 100, 3, Long.MAX_VALUE,
+                                            DistanceMatrixWriter.Format.TEXT),
+                            files);
+
+        assertTrue(errors.contains("Error: Unable to parse file " + files[2]), errors);
+        for (int k = 0; k < files.length; k++) {
+            assertTrue(k == 2 ^ Files.exists(out.resolve("f" + k + ".fasta.tree")), "f" + k);
+        }
+    }
+
+    @Test
+    void alignmentsWaitingForTheBudgetAllRun() throws IOException {
+        // A one-byte budget: every alignment needs all of it, so each waits
+        // for the one before it while the other threads wait too
+        Path out = Files.createDirectory(dir.resolve("out"));
+        Path[] files = new Path[12];
+        for (int k = 0; k < files.length; k++) {
+            files[k] = write("f" + k + ".fasta", ALIGNED);
+        }
+
+        String errors = assertTimeoutPreemptively(Duration.ofSeconds(60), () ->
+                run(new BatchRunner(out.toString(), 100, 4, 1, DistanceMatrixWriter.Format.TEXT), files));
+
+        assertFalse(errors.contains("Error"), errors);
+        for (int k = 0; k < files.length; k++) {
+            assertTrue(Files.exists(out.resolve("f" + k + ".fasta.tree")), "f" + k);
+        }
+    }
+
+    private Path write(String name, String contents) throws IOException {
+        return Files.writeString(dir.resolve(name), contents);
+    }
+
+    // Standard error of runner.run(files); standard output is discarded
+    private static String run(BatchRunner runner, Path... files) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+            runner.run(Arrays.stream(files).map(Path::toString).toList());
+        }
+        finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return errors.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BootstrapTest {
+    @Test
+    void countsDoNotDependOnTheThreadCount() {
+        List<Species> species = Arrays.asList(Alignments.tree(30, 150, 0.08, 59));
+        for (ClusteringStrategy strategy : new ClusteringStrategy[] {ClusteringStrategy.UPGMA,
+                                                                     ClusteringStrategy.NEIGHBOR_JOINING}) {
+            for (DistanceModel model : new DistanceModel[] {DistanceModel.P_DISTANCE, DistanceModel.KIMURA_2P}) {
+                Bootstrap expected = Bootstrap.run(species, strategy, model, 24, 61, 1);
+                for (int parallelism : new int[] {2, 5}) {
+                    Bootstrap actual = Bootstrap.run(species, strategy, model, 24, 61, parallelism);
+                    assertEquals(expected.cladeCounts(), actual.cladeCounts(),
+                                 strategy + " " + model + " on " + parallelism + " threads");
+                    assertEquals(expected.toConsensusNewick(), actual.toConsensusNewick());
+                }
+            }
+        }
+
+        // And the supports a tree is labelled with
+        Species[] array = species.toArray(new Species[0]);
+        PhyloTree serial = new PhyloTree(array, 100, new BuildOptions().setParallelism(1));
+        PhyloTree parallel = new PhyloTree(array, 100, new BuildOptions().setParallelism(4));
+        serial.bootstrap(24, 67);
+        parallel.bootstrap(24, 67);
+        assertEquals(serial.toTreeString(), parallel.toTreeString());
+    }
+
+    @Test
+    void consensusOfWellSeparatedPairs() {
+        // a1 and a2 differ at two sites, as do b1 and b2 and c1 and c2; the
+        // a's and b's are close, the c's unrelated to both
+        Random random = new Random(71);
+        char[] a = randomSequence(random, 300);
+        char[] b = a.clone();
+        for (int k = 0; k < b.length; k += 4) {
+            b[k] = a[k] == 'A' ? 'C' : 'A';
+        }
+        char[] c = randomSequence(random, 300);
+        List<Species> species = Arrays.asList(pairMember("a1", a, 0), pairMember("a2", a, 1),
+                                              pairMember("b1", b, 2), pairMember("b2", b, 3),
+                                              pairMember("c1", c, 5), pairMember("c2", c, 6));
+
+        Bootstrap bootstrap = Bootstrap.run(species, ClusteringStrategy.UPGMA, 50, 73, 3);
+        assertEquals(50, bootstrap.count(0, 2));
+        assertEquals(50, bootstrap.count(0, 4));
+        assertEquals(0, bootstrap.count(1, 3));
+        assertEquals(0, bootstrap.count(species.subList(2, 6)));
+        assertEquals("(((a1,a2)100,(b1,b2)100)100,(c1,c2)100);", bootstrap.toConsensusNewick());
+    }
+
+    private static char[] randomSequence(Random random, int length) {
+        char[] sequence = new char[length];
+        for (int k = 0; k < length; k++) {
+            sequence[k] = "ACGT".charAt(random.nextInt(4));
+        }
+        return sequence;
+    }
+
+    // sequence with sites 11 * offset and 11 * offset + 150 changed
+    private static Species pairMember(String name, char[] sequence, int offset) {
+        char[] changed = sequence.clone();
+        for (int k : new int[] {11 * offset, 11 * offset + 150}) {
+            changed[k] = changed[k] == 'G' ? 'T' : 'G';
+        }
+        return new Species(name, new String(changed), SequenceEncoding.NUCLEOTIDE_2BIT);
+    }
+}
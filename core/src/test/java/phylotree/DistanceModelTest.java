@@ -0,0 +1,125 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class DistanceModelTest {
+    private static final double DELTA = 1e-12;
+
+    @Test
+    void nucleotidesWithoutGaps() {
+        // One transition (A-G) and one transversion (A-C) in 20 columns:
+        // p = 0.1, P = Q = 0.05
+        Species a = species("AAAAAAAAAACCCCCCCCCC", SequenceEncoding.NUCLEOTIDE_2BIT);
+        Species b = species("GCAAAAAAAACCCCCCCCCC", SequenceEncoding.NUCLEOTIDE_2BIT);
+        assertCounts(a, b, 20, 2, 20, 2, 1, 1);
+        assertEquals(0.1, DistanceModel.P_DISTANCE.distance(a, b), DELTA);
+        assertEquals(0.1, DistanceModel.PAIRWISE_DELETION.distance(a, b), DELTA);
+        // -3/4 ln(1 - 4/3 * 0.1)
+        assertEquals(0.10732563273050497, DistanceModel.JUKES_CANTOR.distance(a, b), DELTA);
+        // -1/2 ln(1 - 2 * 0.05 - 0.05) - 1/4 ln(1 - 2 * 0.05)
+        assertEquals(0.10759959366334404, DistanceModel.KIMURA_2P.distance(a, b), DELTA);
+    }
+
+    @Test
+    void nucleotidesWithGapsAndAmbiguity() {
+        // Columns 4, 7 and 9 hold a gap or an ambiguity code: 4 of 10
+        // columns differ, but only the T-A transversion of the 7 compared
+        Species a = species("ACGT-ACGTN", SequenceEncoding.NUCLEOTIDE_4BIT);
+        Species b = species("ACGAAAC-TR", SequenceEncoding.NUCLEOTIDE_4BIT);
+        assertCounts(a, b, 10, 4, 7, 1, 0, 1);
+        assertEquals(0.4, DistanceModel.P_DISTANCE.distance(a, b), DELTA);
+        assertEquals(1.0 / 7.0, DistanceModel.PAIRWISE_DELETION.distance(a, b), DELTA);
+        // -3/4 ln(1 - 4/3 * 1/7)
+        assertEquals(0.1584818202504052, DistanceModel.JUKES_CANTOR.distance(a, b), DELTA);
+        // -1/2 ln(1 - 1/7) - 1/4 ln(1 - 2/7)
+        assertEquals(0.16119339906893232, DistanceModel.KIMURA_2P.distance(a, b), DELTA);
+
+        // The same residues one byte each give the same answers, except
+        // that N and R are ordinary residues there
+        Species c = species("ACGT-ACGTX", SequenceEncoding.BYTE);
+        Species d = species("ACGAAAC-TX", SequenceEncoding.BYTE);
+        assertCounts(c, d, 10, 3, 7, 1, 0, 1);
+        assertEquals(0.16119339906893232, DistanceModel.KIMURA_2P.distance(c, d), DELTA);
+    }
+
+    @Test
+    void proteinsAreNeitherTransitionsNorTransversions() {
+        // K-R is the only compared difference; the gap and X are not compared
+        Species a = species("MKV-LX", SequenceEncoding.BYTE);
+        Species b = species("MRV-LA", SequenceEncoding.BYTE);
+        assertCounts(a, b, 6, 2, 4, 1, 0, 0);
+        assertEquals(2.0 / 6.0, DistanceModel.P_DISTANCE.distance(a, b), DELTA);
+        assertEquals(0.25, DistanceModel.PAIRWISE_DELETION.distance(a, b), DELTA);
+        // -3/4 ln(1 - 4/3 * 1/4)
+        assertEquals(0.30409883108112323, DistanceModel.JUKES_CANTOR.distance(a, b), DELTA);
+        assertEquals(0.0, DistanceModel.KIMURA_2P.distance(a, b));
+    }
+
+    @Test
+    void divergentPairsSaturate() {
+        // p = 0.75: the Jukes-Cantor logarithm is of 0
+        Species a = species("ACGT", SequenceEncoding.NUCLEOTIDE_2BIT);
+        Species b = species("CATT", SequenceEncoding.NUCLEOTIDE_2BIT);
+        assertEquals(DistanceModel.SATURATED, DistanceModel.JUKES_CANTOR.distance(a, b));
+        assertEquals(DistanceModel.SATURATED, DistanceModel.KIMURA_2P.distance(a, b));
+
+        // p = 1: of a negative number
+        Species c = species("CATG", SequenceEncoding.NUCLEOTIDE_2BIT);
+        assertEquals(1.0, DistanceModel.P_DISTANCE.distance(a, c));
+        assertEquals(DistanceModel.SATURATED, DistanceModel.JUKES_CANTOR.distance(a, c));
+        assertEquals(DistanceModel.SATURATED, DistanceModel.KIMURA_2P.distance(a, c));
+
+        // Q = 0.5 and P = 0: only the K2P transversion term saturates, while
+        // Jukes-Cantor (p = 0.5) stays finite at -3/4 ln(1/3)
+        Species d = species("AAAA", SequenceEncoding.NUCLEOTIDE_2BIT);
+        Species e = species("CTAA", SequenceEncoding.NUCLEOTIDE_2BIT);
+        assertCounts(d, e, 4, 2, 4, 2, 0, 2);
+        assertEquals(DistanceModel.SATURATED, DistanceModel.KIMURA_2P.distance(d, e));
+        assertEquals(0.8239592165010823, DistanceModel.JUKES_CANTOR.distance(d, e), DELTA);
+
+        // Finite, but past SATURATED
+        assertEquals(DistanceModel.SATURATED, DistanceModel.JUKES_CANTOR.estimate(0.75 - 1e-14));
+        assertEquals(0.10732563273050497, DistanceModel.JUKES_CANTOR.estimate(0.1), DELTA);
+        assertEquals(DistanceModel.SATURATED, DistanceModel.KIMURA_2P.estimate(0.8));
+        assertEquals(0.8, DistanceModel.P_DISTANCE.estimate(0.8));
+    }
+
+    @Test
+    void pairsWithNothingComparedSaturate() {
+        Species a = species("--NN", SequenceEncoding.NUCLEOTIDE_4BIT);
+        Species b = species("ACGT", SequenceEncoding.NUCLEOTIDE_4BIT);
+        assertCounts(a, b, 4, 4, 0, 0, 0, 0);
+        assertEquals(1.0, DistanceModel.P_DISTANCE.distance(a, b));
+        assertEquals(DistanceModel.SATURATED, DistanceModel.PAIRWISE_DELETION.distance(a, b));
+        assertEquals(DistanceModel.SATURATED, DistanceModel.JUKES_CANTOR.distance(a, b));
+        assertEquals(DistanceModel.SATURATED, DistanceModel.KIMURA_2P.distance(a, b));
+    }
+
+    @Test
+    void identicalSequencesAreAtPositiveZero() {
+        Species a = species("ACGTACGT", SequenceEncoding.NUCLEOTIDE_2BIT);
+        for (DistanceModel model : DistanceModel.values()) {
+            // Not -0.0, which would print with a sign
+            assertEquals(0.0, model.distance(a, a), model.toString());
+        }
+    }
+
+    private static Species species(String residues, SequenceEncoding encoding) {
+        return new Species(residues, residues, encoding);
+    }
+
+    private static void assertCounts(Species a, Species b, long sites, long differences, long compared,
+                                     long comparedDifferences, long transitions, long transversions) {
+        SiteCounts counts = new SiteCounts();
+        SubstitutionKernel.count(a, b, null, counts);
+        String pair = a.getName() + ", " + b.getName();
+        assertEquals(sites, counts.getSites(), pair);
+        assertEquals(differences, counts.getDifferences(), pair);
+        assertEquals(compared, counts.getCompared(), pair);
+        assertEquals(comparedDifferences, counts.getComparedDifferences(), pair);
+        assertEquals(transitions, counts.getTransitions(), pair);
+        assertEquals(transversions, counts.getTransversions(), pair);
+    }
+}
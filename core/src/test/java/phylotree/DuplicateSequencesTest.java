@@ -0,0 +1,80 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class DuplicateSequencesTest {
+    @Test
+    void collapsingLeavesLinkageTreesUnchanged() {
+        Species[] species = withDuplicates(Alignments.tree(40, 200, 0.05, 47));
+        assertTrue(DuplicateSequences.of(species).getDuplicateCount() >= 18);
+        for (ClusteringStrategy strategy : new ClusteringStrategy[] {ClusteringStrategy.UPGMA,
+                                                                     ClusteringStrategy.WPGMA,
+                                                                     ClusteringStrategy.SINGLE_LINKAGE,
+                                                                     ClusteringStrategy.COMPLETE_LINKAGE}) {
+            assertSameCophenetic(build(species, strategy, 0, false), build(species, strategy, 0, true));
+        }
+    }
+
+    @Test
+    void neighborJoiningAndApproximateBuildsAreUnaffected() {
+        Species[] species = withDuplicates(Alignments.tree(40, 200, 0.05, 53));
+        PhyloTree expected = build(species, ClusteringStrategy.NEIGHBOR_JOINING, 0, false);
+        PhyloTree actual = build(species, ClusteringStrategy.NEIGHBOR_JOINING, 0, true);
+        assertEquals(expected.toTreeString(), actual.toTreeString());
+
+        expected = build(species, ClusteringStrategy.UPGMA, 8, false);
+        actual = build(species, ClusteringStrategy.UPGMA, 8, true);
+        assertEquals(expected.toTreeString(), actual.toTreeString());
+    }
+
+    // Checks that two trees over the same species put every pair at the
+    // same cophenetic distance
+    private static void assertSameCophenetic(PhyloTree expected, PhyloTree actual) {
+        List<Species> leaves = expected.getAllSpecies();
+        Map<String,Integer> position = new HashMap<String,Integer>();
+        List<Species> otherLeaves = actual.getAllSpecies();
+        for (int k = 0; k < otherLeaves.size(); k++) {
+            position.put(otherLeaves.get(k).getName(), k);
+        }
+        assertEquals(leaves.size(), position.size());
+
+        DistanceMatrix a = expected.copheneticMatrix();
+        DistanceMatrix b = actual.copheneticMatrix();
+        for (int i = 0; i < leaves.size(); i++) {
+            for (int j = i + 1; j < leaves.size(); j++) {
+                String p = leaves.get(i).getName(), q = leaves.get(j).getName();
+                assertEquals(a.get(i, j), b.get(position.get(p), position.get(q)), 1e-12, p + ", " + q);
+            }
+        }
+    }
+
+    //  species and, interleaved among them, copies of some: three of s000,
+    //  two of s005 and one of every third species after s000
+    private static Species[] withDuplicates(Species[] species) {
+        ArrayList<Species> result = new ArrayList<Species>(List.of(species));
+        int copy = 0;
+        for (int k = 0; k < species.length; k++) {
+            int copies = k == 0 ? 3 : k == 5 ? 2 : k % 3 == 0 ? 1 : 0;
+            for (int c = 0; c < copies; c++) {
+                Species original = species[k];
+                result.add((copy * 7) % (result.size() + 1), new Species(String.format("d%03d", copy++),
+                        String.join("", original.getSequence()), original.getEncoding()));
+            }
+        }
+        return result.toArray(new Species[0]);
+    }
+
+    private static PhyloTree build(Species[] species, ClusteringStrategy strategy, int refinement,
+                                   boolean collapse) {
+        return new PhyloTree(species, 100, new BuildOptions().setStrategy(strategy)
+                .setApproximateRefinement(refinement).setCollapseDuplicates(collapse));
+    }
+}
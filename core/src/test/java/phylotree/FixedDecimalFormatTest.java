@@ -0,0 +1,97 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class FixedDecimalFormatTest {
+    private static final double[] SPECIAL = {
+        0.0, -0.0, -0.001, -0.004999, 0.005, 0.015, 0.025, 0.125, 0.375, -0.125, 2.5, 3.5, -2.5,
+        0.135, 1.005, 0.1 + 0.2, 1e-9, -1e-9, 123456.789, 9.007199254740992E10, 1e15, 1e16, -1e17, 1e300,
+        Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+        Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    void matchesDecimalFormatOnSpecialValues() {
+        for (int digits = 1; digits <= 15; digits++) {
+            for (double x : SPECIAL) {
+                assertSame(digits, x);
+            }
+        }
+    }
+
+    @Test
+    void matchesDecimalFormatOnRoundingTies() {
+        // Every multiple of 2^-10 below 8 is exact in binary, so those with
+        // more fraction digits than digits are true ties at some scale
+        for (int digits : new int[] {1, 2, 5, 6}) {
+            for (int k = -8192; k <= 8192; k++) {
+                assertSame(digits, k / 1024.0);
+            }
+        }
+        // Decimal ties that are not exact in binary
+        for (int digits : new int[] {1, 2, 5, 6}) {
+            double step = Math.pow(10, -digits);
+            for (int k = 0; k < 2000; k++) {
+                assertSame(digits, (k + 0.5) * step);
+                assertSame(digits, -(k + 0.5) * step);
+            }
+        }
+    }
+
+    @Test
+    void matchesDecimalFormatOnRandomValues() {
+        Random random = new Random(11);
+        for (int k = 0; k < 50000; k++) {
+            int digits = 1 + random.nextInt(8);
+            double magnitude = Math.pow(10, random.nextInt(12) - 4);
+            assertSame(digits, (random.nextDouble() - 0.3) * magnitude);
+        }
+    }
+
+    @Test
+    void followsTheDefaultLocale() {
+        Locale saved = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            for (Locale locale : new Locale[] {Locale.GERMANY, Locale.FRANCE, Locale.forLanguageTag("ar-EG"),
+                                               Locale.forLanguageTag("hi-IN-u-nu-deva")}) {
+                Locale.setDefault(Locale.Category.FORMAT, locale);
+                for (double x : SPECIAL) {
+                    assertSame(2, x);
+                    assertSame(6, x);
+                }
+                assertSame(5, -1234.56789);
+            }
+        }
+        finally {
+            Locale.setDefault(Locale.Category.FORMAT, saved);
+        }
+    }
+
+    // Checks the String and encoded forms of x against DecimalFormat
+    private static void assertSame(int digits, double x) {
+        char[] zeros = new char[digits];
+        Arrays.fill(zeros, '0');
+        String expected = new DecimalFormat("0." + new String(zeros)).format(x);
+
+        FixedDecimalFormat format = new FixedDecimalFormat(digits);
+        String message = x + " with " + digits + " digits";
+        assertEquals(expected, format.format(x), message);
+
+        for (Charset charset : new Charset[] {StandardCharsets.UTF_8, StandardCharsets.UTF_16LE}) {
+            ByteBuffer out = ByteBuffer.allocate(2048);
+            format.format(x, out, charset);
+            byte[] bytes = Arrays.copyOf(out.array(), out.position());
+            assertEquals(expected, new String(bytes, charset), message + " in " + charset);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedDistanceStorageTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyPairHasItsOwnSlot() throws IOException {
+        int n = 75;
+        MappedDistanceStorage storage = new MappedDistanceStorage(dir, n, false);
+        Set<Long> slots = new HashSet<Long>();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                assertTrue(slots.add(storage.index(i, j, n)), i + ", " + j);
+                storage.set(storage.index(i, j, n), i * 1000 + j);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                assertEquals(i * 1000 + j, storage.get(storage.index(i, j, n)));
+            }
+        }
+        assertEquals(DistanceMatrixBuilder.condensedSize(n), storage.size());
+    }
+
+    @Test
+    void mappedMatrixBuildsTheSameTreeAsTheHeap() {
+        Species[] species = Alignments.tree(150, 300, 0.05, 7);
+        for (ClusteringStrategy strategy : new ClusteringStrategy[] {ClusteringStrategy.UPGMA,
+                                                                     ClusteringStrategy.NEIGHBOR_JOINING}) {
+            BuildOptions heap = new BuildOptions().setStrategy(strategy);
+            BuildOptions mapped = new BuildOptions().setStrategy(strategy).setDistanceHeapBudget(0)
+                                                    .setSpillDirectory(dir);
+            assertEquals(new PhyloTree(species, 100, heap).toTreeString(),
+                         new PhyloTree(species, 100, mapped).toTreeString(), strategy.toString());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PhyloTreeTest {
+    private static final LinkageClusterer.Linkage[] LINKAGES = LinkageClusterer.Linkage.values();
+
+    @Test
+    void insertedSpeciesAreFoundAndCounted() {
+        Species[] species = Alignments.tree(15, 120, 0.1, 79);
+        for (LinkageClusterer.Linkage linkage : LINKAGES) {
+            PhyloTree tree = build(Arrays.copyOf(species, 12), linkage);
+            // Builds the LCA index, which the insertions must replace
+            tree.findEvolutionaryDistance("s000", "s001");
+
+            for (int k = 12; k < species.length; k++) {
+                tree.addSpecies(species[k]);
+                PhyloTreeNode leaf = tree.findTreeNodeByLabel(species[k].getName());
+                assertNotNull(leaf, linkage + " " + species[k].getName());
+                assertSame(species[k], leaf.getSpecies());
+                assertEquals(k + 1, tree.countAllSpecies());
+                assertConsistent(tree, linkage.toString());
+            }
+        }
+    }
+
+    @Test
+    void identicalSequenceJoinsItsTwin() {
+        Species[] species = Alignments.tree(12, 120, 0.1, 83);
+        for (LinkageClusterer.Linkage linkage : LINKAGES) {
+            PhyloTree tree = build(species, linkage);
+            tree.findEvolutionaryDistance("s000", "s001");
+
+            Species twin = new Species("twin", String.join("", species[7].getSequence()),
+                                       SequenceEncoding.NUCLEOTIDE_2BIT);
+            tree.addSpecies(twin);
+            PhyloTreeNode parent = tree.findTreeNodeByLabel("twin").getParent();
+            assertEquals("s007+twin", parent.getLabel(), linkage.toString());
+            assertSame(tree.findTreeNodeByLabel("s007"), parent.getLeftChild());
+            assertEquals(0.0, parent.getDistanceToChild());
+            assertEquals(0.0, tree.findEvolutionaryDistance("twin", "s007"));
+            assertSame(parent, tree.findLeastCommonAncestor("twin", "s007"));
+            assertConsistent(tree, linkage.toString());
+        }
+    }
+
+    @Test
+    void unrelatedSpeciesJoinsAtTheRoot() {
+        Species[] species = Alignments.tree(12, 120, 0.1, 89);
+        Species outgroup = Alignments.tree(1, 120, 0.0, 97)[0];
+        for (LinkageClusterer.Linkage linkage : LINKAGES) {
+            PhyloTree tree = build(species, linkage);
+            String rootLabel = tree.getOverallRoot().getLabel();
+            tree.addSpecies(new Species("outgroup", String.join("", outgroup.getSequence()),
+                                        SequenceEncoding.NUCLEOTIDE_2BIT));
+            PhyloTreeNode root = tree.getOverallRoot();
+            assertSame(root, tree.findTreeNodeByLabel("outgroup").getParent(), linkage.toString());
+            assertNotNull(tree.findTreeNodeByLabel(rootLabel), linkage.toString());
+            assertSame(root, tree.findTreeNodeByLabel(rootLabel).getParent());
+            assertConsistent(tree, linkage.toString());
+        }
+    }
+
+    private static PhyloTree build(Species[] species, LinkageClusterer.Linkage linkage) {
+        return new PhyloTree(species, 100, new BuildOptions().setStrategy(new LinkageClusterer(linkage)));
+    }
+
+    // Checks every derived view of tree against a walk of its nodes: leaf
+    // order and intervals, heights, clade membership, LCAs and distances
+    private static void assertConsistent(PhyloTree tree, String message) {
+        PhyloTreeNode root = tree.getOverallRoot();
+        List<PhyloTreeNode> nodes = new ArrayList<PhyloTreeNode>();
+        List<Species> leaves = new ArrayList<Species>();
+        ArrayDeque<PhyloTreeNode> pending = new ArrayDeque<PhyloTreeNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            PhyloTreeNode node = pending.pop();
+            nodes.add(node);
+            assertSame(node, tree.findTreeNodeByLabel(node.getLabel()), message);
+            if (node.isLeaf()) {
+                leaves.add(node.getSpecies());
+            }
+            else {
+                assertSame(node, node.getLeftChild().getParent(), message);
+                assertSame(node, node.getRightChild().getParent(), message);
+                pending.push(node.getRightChild());
+                pending.push(node.getLeftChild());
+            }
+        }
+
+        assertEquals(leaves, tree.getAllSpecies(), message);
+        assertEquals(leaves.size(), tree.countAllSpecies(), message);
+        assertEquals(leaves.size(), root.getNumLeafs(), message);
+        assertEquals(PhyloTree.nodeHeight(root), tree.getHeight(), message);
+        assertEquals(PhyloTree.weightedNodeHeight(root), tree.getWeightedHeight(), message);
+
+        for (PhyloTreeNode node : nodes) {
+            if (!node.isLeaf()) {
+                List<Species> below = tree.getSubtreeSpecies(node.getLabel());
+                assertEquals(node.getNumLeafs(), below.size(), message);
+                for (Species s : leaves) {
+                    assertEquals(below.contains(s), tree.isInClade(s.getName(), node.getLabel()), message);
+                }
+            }
+        }
+        for (Species a : leaves) {
+            for (Species b : leaves) {
+                PhyloTreeNode p = tree.findTreeNodeByLabel(a.getName());
+                PhyloTreeNode q = tree.findTreeNodeByLabel(b.getName());
+                String pair = message + ": " + a.getName() + ", " + b.getName();
+                PhyloTreeNode lca = lca(p, q);
+                assertSame(lca, tree.findLeastCommonAncestor(a.getName(), b.getName()), pair);
+                assertEquals(depth(p, lca) + depth(q, lca), tree.findEvolutionaryDistance(a.getName(), b.getName()),
+                             1e-12, pair);
+            }
+        }
+    }
+
+    // Lowest common ancestor by walking parent links
+    private static PhyloTreeNode lca(PhyloTreeNode p, PhyloTreeNode q) {
+        IdentityHashMap<PhyloTreeNode,Boolean> ancestors = new IdentityHashMap<PhyloTreeNode,Boolean>();
+        for (PhyloTreeNode node = p; node != null; node = node.getParent()) {
+            ancestors.put(node, true);
+        }
+        PhyloTreeNode node = q;
+        while (!ancestors.containsKey(node)) {
+            node = node.getParent();
+        }
+        return node;
+    }
+
+    // Sum of branch lengths from node up to ancestor
+    private static double depth(PhyloTreeNode node, PhyloTreeNode ancestor) {
+        double depth = 0.0;
+        for (; node != ancestor; node = node.getParent()) {
+            depth += node.getParent().getDistanceToChild();
+        }
+        return depth;
+    }
+}
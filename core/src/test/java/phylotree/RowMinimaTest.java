@@ -0,0 +1,82 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RowMinimaTest {
+    @Test
+    void sameMergesAsFullScanOnAlignments() {
+        for (Species[] species : new Species[][] {Alignments.tree(120, 200, 0.05, 3),
+                                                  Alignments.ties(120, 12, 5)}) {
+            double[] condensed = new DistanceMatrixBuilder(1).build(species);
+            for (LinkageClusterer.Linkage linkage : LinkageClusterer.Linkage.values()) {
+                assertSameMerges(species.length, condensed, linkage);
+            }
+        }
+    }
+
+    @Test
+    void sameMergesAsFullScanWithTiesAndInfinities() {
+        Random random = new Random(17);
+        for (int round = 0; round < 50; round++) {
+            int n = 2 + random.nextInt(60);
+            double[] condensed = new double[(int) DistanceMatrixBuilder.condensedSize(n)];
+            for (int k = 0; k < condensed.length; k++) {
+                // Few distinct values, so most minima are tied
+                int pick = random.nextInt(20);
+                condensed[k] = pick == 0 ? Double.POSITIVE_INFINITY : pick == 1 ? Double.NaN : random.nextInt(4);
+            }
+            for (LinkageClusterer.Linkage linkage : LinkageClusterer.Linkage.values()) {
+                assertSameMerges(n, condensed, linkage);
+            }
+        }
+    }
+
+    @Test
+    void cachedRowsMatchARescanAfterEveryMerge() {
+        Species[] species = Alignments.ties(80, 10, 9);
+        DistanceMatrix distances = new DistanceMatrix(species.length, new DistanceMatrixBuilder(1).build(species));
+        RowMinima rows = new RowMinima(distances);
+        while (distances.activeCount() > 1) {
+            for (int k = 0; k < distances.activeCount(); k++) {
+                int r = distances.activeId(k);
+                assertEquals(distances.nearestAfter(r), rows.arg(r), "row " + r);
+            }
+            DistanceMatrix.Pair min = rows.minPair(distances);
+            assertEquals(distances.minPair(), min);
+
+            // Single linkage, which keeps many distances tied
+            int i = min.i(), j = min.j();
+            for (int k = 0; k < distances.activeCount(); k++) {
+                int r = distances.activeId(k);
+                if (r != i && r != j) {
+                    distances.set(r, i, Math.min(distances.get(r, i), distances.get(r, j)));
+                }
+            }
+            distances.deactivate(j);
+            rows.merged(distances, i, j);
+        }
+    }
+
+    private static void assertSameMerges(int n, double[] condensed, LinkageClusterer.Linkage linkage) {
+        assertEquals(merges(n, condensed, linkage, LinkageClusterer.Search.FULL_SCAN),
+                     merges(n, condensed, linkage, LinkageClusterer.Search.ROW_MINIMA),
+                     linkage + " over " + n + " clusters");
+    }
+
+    private static List<String> merges(int n, double[] condensed, LinkageClusterer.Linkage linkage,
+                                       LinkageClusterer.Search search) {
+        List<String> merges = new ArrayList<String>();
+        int[] sizes = new int[n];
+        Arrays.fill(sizes, 1);
+        new LinkageClusterer(linkage, search).cluster(new DistanceMatrix(n, condensed.clone()), sizes,
+                (i, j, distance) -> merges.add(i + " " + j + " " + distance));
+        return merges;
+    }
+}
@@ -0,0 +1,101 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class SitePatternsTest {
+    @Test
+    void patternsGiveTheDistancesOfTheFullColumns() {
+        // Gaps and ambiguity codes among the varying columns, and constant
+        // columns of every kind, compared or not
+        Species[][] alignments = {
+            constantColumns(Alignments.tree(40, 300, 0.05, 37), "ACGT"),
+            constantColumns(Alignments.tree(40, 300, 0.08, "ACGTACGTACGT-RYN", SequenceEncoding.NUCLEOTIDE_4BIT,
+                                            41), "AC-NR"),
+            constantColumns(Alignments.tree(40, 300, 0.08, "ACDEFGHIKLMNPQRSTVWY-X", SequenceEncoding.BYTE, 43),
+                            "KW-X?")
+        };
+        for (Species[] species : alignments) {
+            SitePatterns patterns = SitePatterns.of(species);
+            assertTrue(patterns.getPatterns() < patterns.getSites(), species[0].getEncoding().toString());
+            for (DistanceModel model : DistanceModel.values()) {
+                assertSameDistances(species, model);
+
+                // The same through the public builder
+                double[] full = new DistanceMatrixBuilder(1).withModel(model).build(species);
+                double[] compressed = new DistanceMatrixBuilder(1).withModel(model)
+                        .weighted(patterns.getWeights()).build(patterns.getSpecies());
+                assertArrayEquals(full, compressed, model + " over " + species[0].getEncoding());
+            }
+        }
+    }
+
+    @Test
+    void mixedEncodingsGiveTheUncompressedDistances() {
+        // Species(String, String[]) packs each sequence as narrowly as it
+        // can, so a few odd residues leave one alignment in three encodings
+        Species[] tree = Alignments.tree(SitePatterns.MIN_SPECIES + 4, 150, 0.05, 31);
+        Species[] species = new Species[tree.length];
+        for (int i = 0; i < tree.length; i++) {
+            String[] residues = tree[i].getSequence();
+            if (i == 3) {
+                residues[5] = "N";
+            }
+            else if (i == 8) {
+                residues[9] = "-";
+                residues[10] = "R";
+            }
+            else if (i == 12) {
+                residues[0] = "a";
+            }
+            species[i] = new Species(tree[i].getName(), residues);
+        }
+        Set<SequenceEncoding> encodings = EnumSet.noneOf(SequenceEncoding.class);
+        for (Species s : species) {
+            encodings.add(s.getEncoding());
+        }
+        assertEquals(EnumSet.allOf(SequenceEncoding.class), encodings);
+
+        for (DistanceModel model : DistanceModel.values()) {
+            assertSameDistances(species, model);
+            new PhyloTree(species, 100, new BuildOptions().setDistanceModel(model));
+        }
+    }
+
+    // Checks the distances of species with and without compression
+    private static void assertSameDistances(Species[] species, DistanceModel model) {
+        DistanceMatrix full = distances(species, new BuildOptions().setDistanceModel(model).setCompressSites(false));
+        DistanceMatrix compressed = distances(species, new BuildOptions().setDistanceModel(model));
+        for (int i = 0; i < species.length; i++) {
+            for (int j = i + 1; j < species.length; j++) {
+                assertEquals(full.get(i, j), compressed.get(i, j), model + " between " + i + " and " + j);
+            }
+        }
+    }
+
+    // species with every residue of constant repeated down a column of its
+    // own, between the first and second halves of each sequence
+    private static Species[] constantColumns(Species[] species, String constant) {
+        Species[] result = new Species[species.length];
+        for (int i = 0; i < species.length; i++) {
+            StringBuilder residues = new StringBuilder();
+            for (String residue : species[i].getSequence()) {
+                residues.append(residue);
+            }
+            residues.insert(residues.length() / 2, constant);
+            result[i] = new Species(species[i].getName(), residues, species[i].getEncoding());
+        }
+        return result;
+    }
+
+    private static DistanceMatrix distances(Species[] species, BuildOptions options) {
+        return PhyloTree.distances(species, options.setParallelism(2),
+                                   PhaseMetrics.start(null, PhaseMetrics.Phase.DISTANCES));
+    }
+}
@@ -0,0 +1,82 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class SketchClustererTest {
+    @Test
+    void mergesFormOneValidSequence() {
+        assertValidMerges(Alignments.tree(3, 200, 0.08, 101), 2);
+        assertValidMerges(Alignments.tree(33, 300, 0.08, 103), 32);
+        assertValidMerges(Alignments.tree(300, 300, 0.08, 107), 32);
+        // Short two-letter sequences: many duplicates and tied distances
+        assertValidMerges(Alignments.ties(200, 12, 109), 8);
+    }
+
+    @Test
+    void approximateTreesStayCloseToExactOnes() {
+        // refinementSize + 1 is the smallest alignment that is clustered
+        // approximately
+        for (int[] sizes : new int[][] {{300, 32}, {33, 32}, {3, 2}}) {
+            int n = sizes[0], refinement = sizes[1];
+            Species[] species = Alignments.tree(n, 600, 0.08, 113 + n);
+            PhyloTree exact = new PhyloTree(species, 100, new BuildOptions());
+            PhyloTree approximate = new PhyloTree(species, 100, new BuildOptions().setParallelism(2)
+                    .setApproximateRefinement(refinement));
+
+            List<Species> leaves = approximate.getAllSpecies();
+            assertEquals(n, leaves.size());
+            Set<String> names = new HashSet<String>();
+            for (Species s : leaves) {
+                assertTrue(names.add(s.getName()), s.getName());
+            }
+            for (Species s : species) {
+                assertTrue(names.contains(s.getName()), s.getName());
+            }
+
+            // At most half of the 2 (n - 2) clades differ; an unrelated tree
+            // over the same names differs in nearly all of them
+            int bound = n - 2;
+            String message = n + " species refined up to " + refinement;
+            int distance = exact.robinsonFoulds(approximate);
+            assertTrue(distance <= bound, message + ": " + distance);
+            if (n > 3) {
+                PhyloTree unrelated = new PhyloTree(Alignments.tree(n, 600, 0.08, 127 + n), 100, new BuildOptions());
+                assertTrue(exact.robinsonFoulds(unrelated) > bound, message);
+            }
+        }
+    }
+
+    // Checks that clustering species approximately reports n - 1 merges,
+    // each of two distinct clusters that still exist, and returns the last
+    private static void assertValidMerges(Species[] species, int refinement) {
+        int n = species.length;
+        boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+        int[] sizes = new int[n];
+        Arrays.fill(sizes, 1);
+        int[] leaves = sizes.clone();
+        int[] merges = new int[1];
+        int root = new SketchClusterer(ClusteringStrategy.UPGMA, DistanceModel.P_DISTANCE, refinement, 2)
+                .cluster(species, sizes, (i, j, distance) -> {
+                    String merge = "merge " + merges[0] + " of " + i + " and " + j;
+                    assertNotEquals(i, j, merge);
+                    assertTrue(active[i] && active[j], merge);
+                    assertTrue(distance >= 0.0, merge);
+                    active[j] = false;
+                    leaves[i] += leaves[j];
+                    merges[0]++;
+                });
+        assertEquals(n - 1, merges[0]);
+        assertTrue(active[root]);
+        assertEquals(n, leaves[root]);
+    }
+}
@@ -0,0 +1,70 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TreeServerTest {
+    private static final String THREE = ">x|a\nACGTACGT\n>x|b\nACGTACGA\n>x|c\nTCGTTCGA\n";
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private TreeServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        file = dir.resolve("tree.fasta");
+        Files.writeString(file, THREE);
+        server = new TreeServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new BuildOptions());
+        server.addTree("t", file);
+        server.start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void unalignedReloadKeepsTheOldTree() throws Exception {
+        Files.writeString(file, THREE + ">x|d\nACGTA\n");
+        server.reloadChanged();
+
+        assertEquals("t\t3\n", get("/trees"));
+        assertEquals("a+b\n", get("/trees/t/lca?a=a&b=b"));
+    }
+
+    @Test
+    void reloadAfterAFailedOneReplacesTheTree() throws Exception {
+        Files.writeString(file, THREE + ">x|d\nACGTA\n");
+        server.reloadChanged();
+        Files.writeString(file, THREE + ">x|d\nTCGTTCGT\n");
+        server.reloadChanged();
+
+        assertEquals("t\t4\n", get("/trees"));
+    }
+
+    private String get(String path) throws IOException, InterruptedException {
+        InetSocketAddress address = server.getAddress();
+        URI uri = URI.create("http://" + address.getHostString() + ":" + address.getPort() + path);
+        HttpResponse<String> response = HttpClient.newHttpClient()
+                .send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return response.body();
+    }
+}
@@ -0,0 +1,129 @@
+package phylotree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TreeSnapshotTest {
+    private static final int VERSION_OFFSET = 4;
+    private static final int HEADER_BYTES = 40;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripGivesBackTheTree() throws IOException {
+        PhyloTree tree = new PhyloTree(Alignments.tree(60, 120, 0.05, 21), 40, new BuildOptions());
+        for (boolean withLcaIndex : new boolean[] {false, true}) {
+            Path file = dir.resolve("tree" + withLcaIndex + ".snapshot");
+            tree.writeSnapshot(file, withLcaIndex);
+            assertSameTree(tree, PhyloTree.openSnapshot(file));
+        }
+    }
+
+    @Test
+    void roundTripKeepsLabelsOfInsertedSpecies() throws IOException {
+        Species[] species = Alignments.tree(40, 120, 0.05, 23);
+        PhyloTree tree = new PhyloTree(Arrays.copyOf(species, 36), 40,
+                                       new BuildOptions().setMaxInsertionDrift(1.0));
+        tree.addSpecies(Arrays.copyOfRange(species, 36, 40));
+
+        Path file = dir.resolve("inserted.snapshot");
+        tree.writeSnapshot(file, true);
+        assertSameTree(tree, PhyloTree.openSnapshot(file));
+    }
+
+    @Test
+    void corruptPayloadIsRejected() throws IOException {
+        Path file = snapshot();
+        byte[] bytes = Files.readAllBytes(file);
+        for (int offset : new int[] {HEADER_BYTES, HEADER_BYTES + 13, bytes.length - 1}) {
+            byte[] corrupt = bytes.clone();
+            corrupt[offset] ^= 0x10;
+            Files.write(file, corrupt);
+            IOException e = assertThrows(IOException.class, () -> PhyloTree.openSnapshot(file));
+            assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+        }
+    }
+
+    @Test
+    void otherVersionIsRejected() throws IOException {
+        Path file = snapshot();
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(VERSION_OFFSET, 2);
+        Files.write(file, bytes);
+        IOException e = assertThrows(IOException.class, () -> PhyloTree.openSnapshot(file));
+        assertTrue(e.getMessage().contains("unsupported snapshot version 2"), e.getMessage());
+    }
+
+    @Test
+    void truncatedOrForeignFilesAreRejected() throws IOException {
+        Path file = snapshot();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> PhyloTree.openSnapshot(file));
+        Files.writeString(file, ">x|a\nACGT\n>x|b\nACGA\n");
+        assertThrows(IOException.class, () -> PhyloTree.openSnapshot(file));
+    }
+
+    private Path snapshot() throws IOException {
+        Path file = dir.resolve("small.snapshot");
+        new PhyloTree(Alignments.tree(20, 60, 0.1, 29), 40, new BuildOptions()).writeSnapshot(file, true);
+        return file;
+    }
+
+    private static void assertSameTree(PhyloTree expected, PhyloTree actual) {
+        assertEquals(expected.toTreeString(), actual.toTreeString());
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getWeightedHeight(), actual.getWeightedHeight());
+
+        List<Species> species = expected.getAllSpecies();
+        List<Species> reopened = actual.getAllSpecies();
+        assertEquals(species.size(), reopened.size());
+        for (int k = 0; k < species.size(); k++) {
+            assertEquals(species.get(k).getName(), reopened.get(k).getName());
+            assertArrayEquals(species.get(k).getSequence(), reopened.get(k).getSequence());
+        }
+
+        List<String> labels = labels(expected);
+        assertEquals(labels, labels(actual));
+        for (String a : labels) {
+            for (String b : labels) {
+                assertEquals(expected.findLeastCommonAncestor(a, b).getLabel(),
+                             actual.findLeastCommonAncestor(a, b).getLabel(), a + ", " + b);
+                assertEquals(expected.findEvolutionaryDistance(a, b), actual.findEvolutionaryDistance(a, b),
+                             a + ", " + b);
+            }
+        }
+    }
+
+    // Every node's label, in pre-order
+    private static List<String> labels(PhyloTree tree) {
+        List<String> labels = new ArrayList<String>();
+        ArrayDeque<PhyloTreeNode> pending = new ArrayDeque<PhyloTreeNode>();
+        pending.push(tree.getOverallRoot());
+        while (!pending.isEmpty()) {
+            PhyloTreeNode node = pending.pop();
+            labels.add(node.getLabel());
+            if (!node.isLeaf()) {
+                pending.push(node.getRightChild());
+                pending.push(node.getLeftChild());
+            }
+        }
+        return labels;
+    }
+}